@@ -0,0 +1,219 @@
+package fr.g123k.deviceapps;
+
+import androidx.annotation.NonNull;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fr.g123k.deviceapps.utils.IconOptions;
+import fr.g123k.deviceapps.utils.IconRenderer;
+import fr.g123k.deviceapps.utils.PerfStats;
+
+/**
+ * Icons requested on demand (eg: for the visible rows of a list) are generated on their own
+ * threads, so that they never wait behind (or delay) the other method calls.
+ * Icons with the highest priority are generated first and a request can be cancelled
+ * (eg: when its rows are scrolled off screen).
+ */
+class AppIconsQueue {
+
+    private final DeviceAppsPlugin plugin;
+    private final PerfStats stats;
+    private final ThreadPoolExecutor executor;
+    private final PriorityBlockingQueue<Runnable> queue;
+    // ConcurrentHashMap, so that remove(key, value) exists before Android 7.0
+    private final ConcurrentHashMap<Integer, IconsRequest> requests;
+    private final AtomicLong sequence;
+
+    // One renderer per thread (recreated when the options change)
+    private final ThreadLocal<IconRenderer> iconRenderers;
+
+    AppIconsQueue(@NonNull DeviceAppsPlugin plugin, @NonNull PerfStats stats) {
+        this.plugin = plugin;
+        this.stats = stats;
+        this.queue = new PriorityBlockingQueue<>();
+        this.requests = new ConcurrentHashMap<>();
+        this.sequence = new AtomicLong();
+        this.iconRenderers = new ThreadLocal<>();
+
+        int threads = Math.max(Runtime.getRuntime().availableProcessors() / 2, 1);
+        this.executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.SECONDS, queue,
+                new AsyncWork.BackgroundThreadFactory("device_apps_icons_"));
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * The callback receives the icon of each package (null if the app is not installed).
+     * If the request is cancelled, it only receives the icons generated before.
+     *
+     * @param priority icons with the highest priority are generated first
+     */
+    void submit(int requestId,
+                @NonNull List<String> packageNames,
+                @NonNull IconOptions options,
+                int priority,
+                @NonNull Callback callback) {
+        IconsRequest request = new IconsRequest(requestId, options, priority, packageNames.size(), callback);
+
+        if (packageNames.isEmpty()) {
+            request.finish();
+            return;
+        }
+
+        IconsRequest previousRequest = requests.put(requestId, request);
+        if (previousRequest != null) {
+            cancel(previousRequest);
+        }
+
+        for (String packageName : packageNames) {
+            executor.execute(new IconTask(request, packageName, sequence.getAndIncrement()));
+        }
+    }
+
+    /**
+     * @return false if the request was already finished
+     */
+    boolean cancel(int requestId) {
+        IconsRequest request = requests.get(requestId);
+        return request != null && cancel(request);
+    }
+
+    private boolean cancel(IconsRequest request) {
+        if (!request.finish()) {
+            return false;
+        }
+
+        Iterator<Runnable> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            Runnable task = iterator.next();
+            if (task instanceof IconTask && ((IconTask) task).request == request) {
+                iterator.remove();
+            }
+        }
+
+        return true;
+    }
+
+    void stop() {
+        for (IconsRequest request : requests.values()) {
+            request.finished.set(true);
+        }
+
+        requests.clear();
+        executor.shutdownNow();
+    }
+
+    private IconRenderer getIconRenderer(IconOptions options) {
+        IconRenderer iconRenderer = iconRenderers.get();
+
+        if (iconRenderer == null || !iconRenderer.getOptions().getCacheKey().equals(options.getCacheKey())) {
+            iconRenderer = new IconRenderer(options, stats);
+            iconRenderers.set(iconRenderer);
+        }
+
+        return iconRenderer;
+    }
+
+    interface Callback {
+        void onIconsAvailable(Map<String, byte[]> icons);
+    }
+
+    private class IconsRequest {
+        final int id;
+        final IconOptions options;
+        final int priority;
+        final Callback callback;
+
+        final Map<String, byte[]> icons;
+        final AtomicInteger remaining;
+        final AtomicBoolean finished;
+
+        IconsRequest(int id, IconOptions options, int priority, int count, Callback callback) {
+            this.id = id;
+            this.options = options;
+            this.priority = priority;
+            this.callback = callback;
+            this.icons = new LinkedHashMap<>(count);
+            this.remaining = new AtomicInteger(count);
+            this.finished = new AtomicBoolean();
+        }
+
+        void onIconAvailable(String packageName, byte[] icon) {
+            synchronized (icons) {
+                icons.put(packageName, icon);
+            }
+
+            if (remaining.decrementAndGet() == 0) {
+                finish();
+            }
+        }
+
+        /**
+         * Sends the icons to the callback (only once)
+         */
+        boolean finish() {
+            if (!finished.compareAndSet(false, true)) {
+                return false;
+            }
+
+            requests.remove(id, this);
+
+            Map<String, byte[]> result;
+            synchronized (icons) {
+                result = new LinkedHashMap<>(icons);
+            }
+
+            callback.onIconsAvailable(result);
+            return true;
+        }
+    }
+
+    private class IconTask implements Runnable, Comparable<IconTask> {
+        final IconsRequest request;
+        final String packageName;
+        final long sequence;
+
+        IconTask(IconsRequest request, String packageName, long sequence) {
+            this.request = request;
+            this.packageName = packageName;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            if (request.finished.get()) {
+                return;
+            }
+
+            byte[] icon = null;
+            try {
+                icon = plugin.getAppIcon(packageName, getIconRenderer(request.options));
+            } finally {
+                // Even if the icon can't be generated, the request must complete
+                request.onIconAvailable(packageName, icon);
+            }
+        }
+
+        /**
+         * Highest priority first, then in the order of submission
+         */
+        @Override
+        public int compareTo(@NonNull IconTask other) {
+            if (request.priority != other.request.priority) {
+                return request.priority > other.request.priority ? -1 : 1;
+            }
+
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+
+}
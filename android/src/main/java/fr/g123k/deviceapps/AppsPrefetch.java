@@ -0,0 +1,148 @@
+package fr.g123k.deviceapps;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.os.Bundle;
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Opt-in warm-up of the caches (app data and icons) as soon as the plugin is attached,
+ * configured with meta-data in the AndroidManifest.xml of the app:
+ * <pre>
+ * &lt;meta-data android:name="fr.g123k.deviceapps.prefetch" android:value="true" /&gt;
+ * &lt;meta-data android:name="fr.g123k.deviceapps.prefetch_system_apps" android:value="false" /&gt;
+ * &lt;meta-data android:name="fr.g123k.deviceapps.prefetch_icons" android:value="true" /&gt;
+ * &lt;meta-data android:name="fr.g123k.deviceapps.prefetch_icon_size" android:value="96" /&gt;
+ * &lt;meta-data android:name="fr.g123k.deviceapps.prefetch_icon_format" android:value="png" /&gt;
+ * </pre>
+ * Apps are processed by chunks, each one being a separate task of {@link AsyncWork}, so that
+ * method calls are not blocked until the end of the prefetch.
+ * <p>
+ * The prefetch must not compete with the startup of the app: chunks are only processed by the
+ * serial thread ({@code max_parallelism} = 1), with a background priority.
+ */
+class AppsPrefetch {
+
+    private static final String META_DATA_PREFIX = "fr.g123k.deviceapps.";
+    private static final String META_DATA_PREFETCH = META_DATA_PREFIX + "prefetch";
+    private static final String META_DATA_SYSTEM_APPS = META_DATA_PREFIX + "prefetch_system_apps";
+    private static final String META_DATA_ICONS = META_DATA_PREFIX + "prefetch_icons";
+    private static final String META_DATA_ICON_SIZE = META_DATA_PREFIX + "prefetch_icon_size";
+    private static final String META_DATA_ICON_FORMAT = META_DATA_PREFIX + "prefetch_icon_format";
+
+    private static final int CHUNK_SIZE = 20;
+
+    private final DeviceAppsPlugin plugin;
+    private final AsyncWork asyncWork;
+    private final AtomicBoolean cancelled;
+
+    AppsPrefetch(@NonNull DeviceAppsPlugin plugin, @NonNull AsyncWork asyncWork) {
+        this.plugin = plugin;
+        this.asyncWork = asyncWork;
+        this.cancelled = new AtomicBoolean(false);
+    }
+
+    /**
+     * Does nothing if the prefetch is not enabled in the manifest
+     */
+    void start(@NonNull final Context context) {
+        asyncWork.run(new Runnable() {
+            @Override
+            public void run() {
+                if (cancelled.get()) {
+                    return;
+                }
+
+                InstalledAppsRequest request = getRequest(context);
+                if (request == null) {
+                    return;
+                }
+
+                List<AppsQuery.Candidate> apps = plugin.filterPackages(plugin.getInstalledPackages(), request);
+                prefetch(apps, 0, request);
+            }
+        });
+    }
+
+    void cancel() {
+        cancelled.set(true);
+    }
+
+    private void prefetch(final List<AppsQuery.Candidate> apps, final int start, final InstalledAppsRequest request) {
+        if (cancelled.get()) {
+            return;
+        }
+
+        if (start >= apps.size()) {
+            plugin.saveCache();
+            return;
+        }
+
+        // The serial thread is shared with method calls, which keep their priority
+        int tid = Process.myTid();
+        int priority = Process.getThreadPriority(tid);
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+        try {
+            // The result is not needed: the caches are filled
+            plugin.buildAppsData(apps.subList(start, Math.min(start + CHUNK_SIZE, apps.size())), request);
+        } finally {
+            Process.setThreadPriority(tid, priority);
+        }
+
+        // AsyncWork is stopped once the plugin is detached
+        if (cancelled.get()) {
+            return;
+        }
+
+        asyncWork.run(new Runnable() {
+            @Override
+            public void run() {
+                prefetch(apps, start + CHUNK_SIZE, request);
+            }
+        });
+    }
+
+    /**
+     * @return null if the prefetch is not enabled
+     */
+    private static InstalledAppsRequest getRequest(Context context) {
+        Bundle metaData;
+
+        try {
+            ApplicationInfo applicationInfo = context.getPackageManager().getApplicationInfo(context.getPackageName(), PackageManager.GET_META_DATA);
+            metaData = applicationInfo.metaData;
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        }
+
+        if (metaData == null || !metaData.getBoolean(META_DATA_PREFETCH, false)) {
+            return null;
+        }
+
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("system_apps", metaData.getBoolean(META_DATA_SYSTEM_APPS, false));
+        arguments.put("max_parallelism", 1);
+
+        if (metaData.getBoolean(META_DATA_ICONS, false)) {
+            arguments.put("include_app_icons", true);
+            arguments.put("icon_size", metaData.getInt(META_DATA_ICON_SIZE, 0));
+
+            String format = metaData.getString(META_DATA_ICON_FORMAT);
+            if (format != null) {
+                arguments.put("icon_format", format);
+            }
+        }
+
+        return new InstalledAppsRequest(arguments);
+    }
+
+}
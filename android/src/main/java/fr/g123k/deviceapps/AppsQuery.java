@@ -0,0 +1,196 @@
+package fr.g123k.deviceapps;
+
+import android.content.pm.PackageInfo;
+import android.os.Build;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Filters, sort and pagination evaluated before the data of each app is computed, so that
+ * excluded apps never cost a label or an icon.
+ * Only the label filter and the sort by name require to load the label.
+ */
+class AppsQuery {
+
+    private static final String SORT_BY_PACKAGE_NAME = "package_name";
+    private static final String SORT_BY_APP_NAME = "app_name";
+    private static final String SORT_BY_INSTALL_TIME = "install_time";
+    private static final String SORT_BY_UPDATE_TIME = "update_time";
+
+    // null = no filter
+    private final Set<Integer> categories;
+    private final Boolean enabled;
+    private final long installedAfter;
+    private final long updatedAfter;
+    private final String packageNamePrefix;
+    private final String labelContains;
+
+    private final String sortBy;
+    private final boolean sortDescending;
+    private final int offset;
+    // 0 = no limit
+    private final int limit;
+
+    private AppsQuery(Map<?, ?> query) {
+        Object categories = query.get("categories");
+        if (categories instanceof Collection) {
+            this.categories = new HashSet<>();
+            for (Object category : (Collection<?>) categories) {
+                if (category instanceof Number) {
+                    this.categories.add(((Number) category).intValue());
+                }
+            }
+        } else {
+            this.categories = null;
+        }
+
+        Object enabled = query.get("enabled");
+        this.enabled = enabled instanceof Boolean ? (Boolean) enabled : null;
+        this.installedAfter = getLong(query, "installed_after");
+        this.updatedAfter = getLong(query, "updated_after");
+        this.packageNamePrefix = getString(query, "package_name_prefix");
+
+        String labelContains = getString(query, "label_contains");
+        this.labelContains = labelContains != null ? labelContains.toLowerCase(Locale.getDefault()) : null;
+
+        this.sortBy = getString(query, "sort_by");
+        this.sortDescending = Boolean.TRUE.equals(query.get("sort_descending"));
+        this.offset = (int) Math.max(getLong(query, "offset"), 0);
+        this.limit = (int) Math.max(getLong(query, "limit"), 0);
+    }
+
+    /**
+     * @return null if there is no query
+     */
+    static AppsQuery fromArguments(Map<?, ?> arguments) {
+        Object query = arguments.get("query");
+        return query instanceof Map ? new AppsQuery((Map<?, ?>) query) : null;
+    }
+
+    boolean needsLabel() {
+        return labelContains != null || SORT_BY_APP_NAME.equals(sortBy);
+    }
+
+    /**
+     * @param label only provided if {@link #needsLabel()} is true
+     */
+    boolean matches(PackageInfo packageInfo, String label) {
+        if (packageNamePrefix != null && !packageInfo.packageName.startsWith(packageNamePrefix)) {
+            return false;
+        } else if (enabled != null && packageInfo.applicationInfo.enabled != enabled) {
+            return false;
+        } else if (installedAfter > 0 && packageInfo.firstInstallTime <= installedAfter) {
+            return false;
+        } else if (updatedAfter > 0 && packageInfo.lastUpdateTime <= updatedAfter) {
+            return false;
+        } else if (categories != null && !categories.contains(getCategory(packageInfo))) {
+            return false;
+        } else if (labelContains != null && (label == null || !label.toLowerCase(Locale.getDefault()).contains(labelContains))) {
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Sorts the apps (if requested), then only keeps the requested page
+     */
+    List<Candidate> sortAndPaginate(List<Candidate> candidates) {
+        Comparator<Candidate> comparator = getComparator();
+        if (comparator != null) {
+            Collections.sort(candidates, sortDescending ? Collections.reverseOrder(comparator) : comparator);
+        }
+
+        if (offset >= candidates.size()) {
+            return new ArrayList<>(0);
+        }
+
+        int end = limit > 0 ? Math.min(offset + limit, candidates.size()) : candidates.size();
+        return candidates.subList(offset, end);
+    }
+
+    private Comparator<Candidate> getComparator() {
+        if (sortBy == null) {
+            return null;
+        }
+
+        switch (sortBy) {
+            case SORT_BY_PACKAGE_NAME:
+                return new Comparator<Candidate>() {
+                    @Override
+                    public int compare(Candidate c1, Candidate c2) {
+                        return c1.packageInfo.packageName.compareTo(c2.packageInfo.packageName);
+                    }
+                };
+            case SORT_BY_APP_NAME:
+                final Collator collator = Collator.getInstance();
+                return new Comparator<Candidate>() {
+                    @Override
+                    public int compare(Candidate c1, Candidate c2) {
+                        return collator.compare(String.valueOf(c1.label), String.valueOf(c2.label));
+                    }
+                };
+            case SORT_BY_INSTALL_TIME:
+                return new Comparator<Candidate>() {
+                    @Override
+                    public int compare(Candidate c1, Candidate c2) {
+                        return compareLongs(c1.packageInfo.firstInstallTime, c2.packageInfo.firstInstallTime);
+                    }
+                };
+            case SORT_BY_UPDATE_TIME:
+                return new Comparator<Candidate>() {
+                    @Override
+                    public int compare(Candidate c1, Candidate c2) {
+                        return compareLongs(c1.packageInfo.lastUpdateTime, c2.packageInfo.lastUpdateTime);
+                    }
+                };
+            default:
+                return null;
+        }
+    }
+
+    private static int compareLongs(long l1, long l2) {
+        return l1 < l2 ? -1 : (l1 == l2 ? 0 : 1);
+    }
+
+    private static int getCategory(PackageInfo packageInfo) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            return packageInfo.applicationInfo.category;
+        }
+        // ApplicationInfo.CATEGORY_UNDEFINED
+        return -1;
+    }
+
+    private static long getLong(Map<?, ?> query, String key) {
+        Object value = query.get(key);
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+
+    private static String getString(Map<?, ?> query, String key) {
+        Object value = query.get(key);
+        return value instanceof String && !((String) value).isEmpty() ? (String) value : null;
+    }
+
+    /**
+     * An app matching the filters, with its label (if it was needed)
+     */
+    static class Candidate {
+        final PackageInfo packageInfo;
+        final String label;
+
+        Candidate(PackageInfo packageInfo, String label) {
+            this.packageInfo = packageInfo;
+            this.label = label;
+        }
+    }
+
+}
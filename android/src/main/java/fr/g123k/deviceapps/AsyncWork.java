@@ -1,25 +1,144 @@
 package fr.g123k.deviceapps;
 
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fr.g123k.deviceapps.utils.PerfStats;
 
 class AsyncWork {
 
     private final ThreadPoolExecutor threadPoolExecutor;
     private final BlockingQueue<Runnable> workQueue;
 
-    AsyncWork() {
+    // Used by runInParallel
+    private final ThreadPoolExecutor workersExecutor;
+    private final int maxParallelism;
+
+    private final PerfStats stats;
+
+    AsyncWork(@NonNull PerfStats stats) {
+        this.stats = stats;
         this.workQueue = new LinkedBlockingQueue<>();
         this.threadPoolExecutor = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS, workQueue);
+
+        // The calling thread also processes items, hence the - 1
+        this.maxParallelism = Math.max(Runtime.getRuntime().availableProcessors() - 1, 1);
+        this.workersExecutor = new ThreadPoolExecutor(maxParallelism, maxParallelism, 1, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new BackgroundThreadFactory("device_apps_worker_"));
+        this.workersExecutor.allowCoreThreadTimeOut(true);
     }
 
-    void run(Runnable runnable) {
-        threadPoolExecutor.execute(runnable);
+    void run(final Runnable runnable) {
+        if (!stats.isEnabled()) {
+            threadPoolExecutor.execute(runnable);
+            return;
+        }
+
+        final long enqueueTime = System.nanoTime();
+        threadPoolExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                stats.record(PerfStats.PHASE_QUEUE_WAIT, System.nanoTime() - enqueueTime);
+                runnable.run();
+            }
+        });
+    }
+
+    /**
+     * Processes {@code count} items on up to {@code parallelism} threads (the calling thread
+     * included) and returns the results in the same order as the indexes.
+     * Each thread creates its own {@link ParallelWork.Worker}.
+     *
+     * @param parallelism 0 or less to use as many threads as available cores
+     */
+    <T> List<T> runInParallel(final int count, int parallelism, @NonNull final ParallelWork<T> work) {
+        final Object[] results = new Object[count];
+        final AtomicInteger nextIndex = new AtomicInteger();
+
+        Runnable runner = new Runnable() {
+            @Override
+            public void run() {
+                ParallelWork.Worker<T> worker = work.createWorker();
+
+                int index;
+                while ((index = nextIndex.getAndIncrement()) < count) {
+                    results[index] = worker.process(index);
+                }
+            }
+        };
+
+        int threads = Math.min(count, parallelism > 0 ? Math.min(parallelism, maxParallelism + 1) : maxParallelism + 1);
+        List<Future<?>> futures = new ArrayList<>(Math.max(threads - 1, 0));
+        for (int i = 1; i < threads; i++) {
+            futures.add(workersExecutor.submit(runner));
+        }
+
+        runner.run();
+
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+
+        //noinspection unchecked
+        return (List<T>) Arrays.asList(results);
     }
 
     void stop() {
         threadPoolExecutor.shutdown();
+        workersExecutor.shutdown();
+    }
+
+    interface ParallelWork<T> {
+
+        /**
+         * Called once per thread
+         */
+        Worker<T> createWorker();
+
+        interface Worker<T> {
+            T process(int index);
+        }
+    }
+
+    static class BackgroundThreadFactory implements ThreadFactory {
+
+        private final String namePrefix;
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        BackgroundThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
+
+        @Override
+        public Thread newThread(@NonNull final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, namePrefix + threadNumber.getAndIncrement());
+        }
     }
 }
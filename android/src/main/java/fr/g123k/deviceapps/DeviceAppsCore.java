@@ -0,0 +1,197 @@
+package fr.g123k.deviceapps;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+
+import fr.g123k.deviceapps.cache.ApkDigestCache;
+import fr.g123k.deviceapps.cache.AppDataCache;
+import fr.g123k.deviceapps.cache.IconCache;
+import fr.g123k.deviceapps.cache.LabelCache;
+import fr.g123k.deviceapps.cache.LauncherIndex;
+import fr.g123k.deviceapps.cache.SearchIndex;
+import fr.g123k.deviceapps.cache.SyncSnapshot;
+import fr.g123k.deviceapps.listener.PackagesObserver;
+import fr.g123k.deviceapps.listener.PackagesReceiver;
+import fr.g123k.deviceapps.utils.PerfStats;
+
+/**
+ * State shared by all the engines of the process (eg: add-to-app with multiple
+ * {@code FlutterEngine}s): a single executor, a single receiver and the same caches / indexes.
+ * <p>
+ * Each attached plugin holds a reference, obtained with {@link #acquire(Context)}: the core is
+ * only stopped once the last one is released, and a new one is created on the next attach.
+ * <p>
+ * Locale changes (which change the labels) and memory pressure are received with
+ * {@link ComponentCallbacks2}. Changes of packages invalidate the caches as long as the core
+ * exists, whether or not events are listened to on the Flutter side.
+ */
+class DeviceAppsCore {
+
+    private static DeviceAppsCore instance;
+    private static int references;
+
+    final Context context;
+    final PerfStats stats;
+    final AsyncWork asyncWork;
+    final PackagesReceiver packagesReceiver;
+    final AppDataCache appDataCache;
+    final IconCache iconCache;
+    final LabelCache labelCache;
+    final ApkDigestCache apkDigestCache;
+    final LauncherIndex launcherIndex;
+    final SearchIndex searchIndex;
+    final SyncSnapshot syncSnapshot;
+
+    private boolean searchIndexObserved;
+    private boolean prefetchStarted;
+
+    private DeviceAppsCore(@NonNull Context context) {
+        this.context = context;
+        this.stats = new PerfStats();
+        this.asyncWork = new AsyncWork(stats);
+        this.packagesReceiver = new PackagesReceiver();
+        this.appDataCache = new AppDataCache(context.getCacheDir());
+        this.iconCache = new IconCache(context.getCacheDir());
+        this.labelCache = new LabelCache();
+        this.apkDigestCache = new ApkDigestCache(context.getCacheDir());
+        this.launcherIndex = new LauncherIndex();
+        this.searchIndex = new SearchIndex();
+        this.syncSnapshot = new SyncSnapshot(context.getFilesDir());
+
+        String locale = getLocale(context.getResources().getConfiguration());
+        labelCache.setLocale(locale);
+        appDataCache.setLocale(locale);
+        context.registerComponentCallbacks(componentCallbacks);
+        packagesReceiver.addObserver(context, cachesObserver);
+
+        asyncWork.run(new Runnable() {
+            @Override
+            public void run() {
+                appDataCache.loadSnapshot();
+                apkDigestCache.loadSnapshot();
+            }
+        });
+    }
+
+    static synchronized DeviceAppsCore acquire(@NonNull Context context) {
+        if (instance == null) {
+            instance = new DeviceAppsCore(context.getApplicationContext());
+        }
+
+        references++;
+        return instance;
+    }
+
+    /**
+     * Must be called once per {@link #acquire(Context)}
+     */
+    static synchronized void release(@NonNull DeviceAppsCore core) {
+        if (core != instance) {
+            return;
+        }
+
+        references--;
+        if (references == 0) {
+            instance = null;
+            core.packagesReceiver.unregister(core.context);
+            core.context.unregisterComponentCallbacks(core.componentCallbacks);
+            core.asyncWork.stop();
+        }
+    }
+
+    /**
+     * The prefetch is only started by the first engine, the caches being shared
+     */
+    synchronized boolean shouldStartPrefetch() {
+        if (prefetchStarted) {
+            return false;
+        }
+
+        prefetchStarted = true;
+        return true;
+    }
+
+    /**
+     * Marks the packages of the {@link #searchIndex} as dirty when they change.
+     * Must be called on the main thread, before the index is built.
+     */
+    synchronized void observeSearchIndex() {
+        if (searchIndexObserved) {
+            return;
+        }
+
+        searchIndexObserved = true;
+        packagesReceiver.addObserver(context, new PackagesObserver() {
+            @Override
+            public void onPackageChanged(String packageName) {
+                searchIndex.markDirty(packageName);
+            }
+        });
+    }
+
+    /**
+     * Notified on the main thread, before the listeners of the engines
+     */
+    private final PackagesObserver cachesObserver = new PackagesObserver() {
+        @Override
+        public void onPackageChanged(final String packageName) {
+            appDataCache.invalidate(packageName);
+            iconCache.invalidateMemory(packageName);
+            labelCache.invalidate(packageName);
+            apkDigestCache.invalidate(packageName);
+            launcherIndex.invalidate();
+
+            asyncWork.run(new Runnable() {
+                @Override
+                public void run() {
+                    iconCache.deleteFiles(packageName);
+                }
+            });
+        }
+    };
+
+    private final ComponentCallbacks2 componentCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onConfigurationChanged(@NonNull Configuration newConfig) {
+            final String locale = getLocale(newConfig);
+            if (locale.equals(labelCache.getLocale())) {
+                return;
+            }
+
+            labelCache.setLocale(locale);
+
+            // Serialized with the listings, which may be reading these caches
+            asyncWork.run(new Runnable() {
+                @Override
+                public void run() {
+                    appDataCache.setLocale(locale);
+                    searchIndex.clear();
+                }
+            });
+        }
+
+        @Override
+        public void onLowMemory() {
+            labelCache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        }
+
+        @Override
+        public void onTrimMemory(int level) {
+            labelCache.trimMemory(level);
+        }
+    };
+
+    @SuppressWarnings("deprecation")
+    private static String getLocale(Configuration configuration) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            return configuration.getLocales().toLanguageTags();
+        }
+
+        return String.valueOf(configuration.locale);
+    }
+
+}
@@ -1,11 +1,11 @@
 package fr.g123k.deviceapps;
 
+import android.content.ActivityNotFoundException;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
-import android.graphics.Bitmap;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.os.Build;
@@ -17,16 +17,30 @@ import android.util.Log;
 
 import androidx.annotation.NonNull;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
+import fr.g123k.deviceapps.cache.ApkDigestCache;
+import fr.g123k.deviceapps.cache.AppDataCache;
+import fr.g123k.deviceapps.cache.IconCache;
+import fr.g123k.deviceapps.cache.LabelCache;
+import fr.g123k.deviceapps.cache.LauncherIndex;
+import fr.g123k.deviceapps.cache.SearchIndex;
 import fr.g123k.deviceapps.listener.DeviceAppsChangedListener;
 import fr.g123k.deviceapps.listener.DeviceAppsChangedListenerInterface;
 import fr.g123k.deviceapps.utils.AppDataConstants;
 import fr.g123k.deviceapps.utils.AppDataEventConstants;
+import fr.g123k.deviceapps.utils.CompactAppsEncoder;
+import fr.g123k.deviceapps.utils.IconOptions;
+import fr.g123k.deviceapps.utils.IconRenderer;
 import fr.g123k.deviceapps.utils.IntentUtils;
+import fr.g123k.deviceapps.utils.PerfStats;
 import io.flutter.embedding.engine.plugins.FlutterPlugin;
 import io.flutter.plugin.common.BinaryMessenger;
 import io.flutter.plugin.common.EventChannel;
@@ -36,7 +50,6 @@ import io.flutter.plugin.common.MethodChannel.MethodCallHandler;
 import io.flutter.plugin.common.MethodChannel.Result;
 
 import static fr.g123k.deviceapps.utils.Base64Utils.encodeToBase64;
-import static fr.g123k.deviceapps.utils.DrawableUtils.getBitmapFromDrawable;
 
 /**
  * DeviceAppsPlugin
@@ -48,22 +61,43 @@ public class DeviceAppsPlugin implements
         DeviceAppsChangedListenerInterface {
 
     private static final String LOG_TAG = "DEVICE_APPS";
+    private static final long DEFAULT_EVENTS_WINDOW_MS = 500;
     private static final int SYSTEM_APP_MASK = ApplicationInfo.FLAG_SYSTEM | ApplicationInfo.FLAG_UPDATED_SYSTEM_APP;
 
-    private final AsyncWork asyncWork;
+    private final InstalledAppsBatches installedAppsBatches;
+    private final Handler mainHandler;
+
+    // Shared with the other engines of the process. The executor and the stats are kept after
+    // the detach, for the tasks which are still running
+    private DeviceAppsCore core;
+    private PerfStats stats;
+    private AsyncWork asyncWork;
 
     private MethodChannel methodChannel;
     private EventChannel eventChannel;
+    private EventChannel.EventSink eventsSink;
+    private EventChannel batchedEventChannel;
+    private EventChannel installedAppsChannel;
+    private InstalledAppsStreamHandler installedAppsStreamHandler;
+    private AppIconsQueue appIconsQueue;
+    private AppsPrefetch appsPrefetch;
     private DeviceAppsChangedListener appsListener;
-
+    private AppDataCache appDataCache;
+    private IconCache iconCache;
+    private LabelCache labelCache;
+    private ApkDigestCache apkDigestCache;
+    private LauncherIndex launcherIndex;
+    private SearchIndex searchIndex;
+    private InstalledAppsSync installedAppsSync;
 
     public DeviceAppsPlugin() {
-        this.asyncWork = new AsyncWork();
+        this.installedAppsBatches = new InstalledAppsBatches();
+        this.mainHandler = new Handler(Looper.getMainLooper());
     }
 
     @Override
     public void onAttachedToEngine(@NonNull FlutterPluginBinding binding) {
-        context = binding.getApplicationContext();
+        attach(binding.getApplicationContext());
 
         BinaryMessenger messenger = binding.getBinaryMessenger();
         methodChannel = new MethodChannel(messenger, "g123k/device_apps");
@@ -71,27 +105,91 @@ public class DeviceAppsPlugin implements
 
         eventChannel = new EventChannel(messenger, "g123k/device_apps_events");
         eventChannel.setStreamHandler(this);
+
+        batchedEventChannel = new EventChannel(messenger, "g123k/device_apps_events_batched");
+        batchedEventChannel.setStreamHandler(batchedEventsStreamHandler);
+
+        installedAppsStreamHandler = new InstalledAppsStreamHandler(this, asyncWork);
+        installedAppsChannel = new EventChannel(messenger, "g123k/device_apps_installed_apps");
+        installedAppsChannel.setStreamHandler(installedAppsStreamHandler);
+    }
+
+    /**
+     * Everything but the channels (also used by the benchmarks, without any engine)
+     */
+    void attach(@NonNull Context applicationContext) {
+        core = DeviceAppsCore.acquire(applicationContext);
+        context = core.context;
+        stats = core.stats;
+        asyncWork = core.asyncWork;
+
+        appDataCache = core.appDataCache;
+        iconCache = core.iconCache;
+        labelCache = core.labelCache;
+        apkDigestCache = core.apkDigestCache;
+        launcherIndex = core.launcherIndex;
+        searchIndex = core.searchIndex;
+        appIconsQueue = new AppIconsQueue(this, stats);
+        installedAppsSync = new InstalledAppsSync(this, core.syncSnapshot);
+
+        if (core.shouldStartPrefetch()) {
+            appsPrefetch = new AppsPrefetch(this, asyncWork);
+            appsPrefetch.start(context);
+        }
     }
 
     private Context context;
 
     @Override
     @SuppressWarnings("ConstantConditions")
-    public void onMethodCall(MethodCall call, @NonNull final Result result) {
+    public void onMethodCall(MethodCall call, @NonNull Result methodResult) {
+        final Result result = stats.isEnabled() ? new TimedResult(methodResult, call.method) : methodResult;
+
         switch (call.method) {
+            case "setStatsEnabled":
+                stats.setEnabled(Boolean.TRUE.equals(call.argument("enabled")), Boolean.TRUE.equals(call.argument("trace")));
+                result.success(null);
+                break;
+            case "getStats":
+                result.success(stats.toMap());
+                break;
+            case "resetStats":
+                stats.reset();
+                result.success(null);
+                break;
+            case "clearCaches":
+                runInBackground(result, new Callable<Object>() {
+                    @Override
+                    public Object call() {
+                        clearCaches();
+                        return null;
+                    }
+                });
+                break;
             case "getInstalledApps":
-                boolean systemApps = call.hasArgument("system_apps") && (Boolean) (call.argument("system_apps"));
-                boolean includeAppIcons = call.hasArgument("include_app_icons") && (Boolean) (call.argument("include_app_icons"));
-                boolean onlyAppsWithLaunchIntent = call.hasArgument("only_apps_with_launch_intent") && (Boolean) (call.argument("only_apps_with_launch_intent"));
-                fetchInstalledApps(systemApps, includeAppIcons, onlyAppsWithLaunchIntent, new InstalledAppsCallback() {
+                final InstalledAppsRequest installedAppsRequest = new InstalledAppsRequest((Map<?, ?>) call.arguments);
+                fetchInstalledApps(installedAppsRequest, new InstalledAppsCallback() {
                     @Override
                     public void onInstalledAppsListAvailable(final List<Map<String, Object>> apps) {
-                        new Handler(Looper.getMainLooper()).post(new Runnable() {
-                            @Override
-                            public void run() {
-                                result.success(apps);
-                            }
-                        });
+                        // Encoded on the background thread
+                        postSuccess(result, serializeApps(apps, installedAppsRequest));
+                    }
+
+                    @Override
+                    public void onInstalledAppsListError(Exception exception) {
+                        postError(result, exception);
+                    }
+                });
+                break;
+            case "getInstalledAppsChangedSince":
+                final String token = call.argument("token");
+                final InstalledAppsRequest syncRequest = new InstalledAppsRequest((Map<?, ?>) call.arguments);
+                runInBackground(result, new Callable<Object>() {
+                    @Override
+                    public Object call() {
+                        Map<String, Object> changes = installedAppsSync.getChangesSince(context, token, syncRequest);
+                        saveCache();
+                        return changes;
                     }
                 });
                 break;
@@ -99,41 +197,137 @@ public class DeviceAppsPlugin implements
                 if (!call.hasArgument("package_name") || TextUtils.isEmpty(call.argument("package_name").toString())) {
                     result.error("ERROR", "Empty or null package name", null);
                 } else {
-                    String packageName = call.argument("package_name").toString();
+                    final String packageName = call.argument("package_name").toString();
                     boolean includeAppIcon = call.hasArgument("include_app_icon") && (Boolean) (call.argument("include_app_icon"));
-                    result.success(getApp(packageName, includeAppIcon));
+                    final int iconOutput = InstalledAppsRequest.getIconOutput((Map<?, ?>) call.arguments, "app_icon_as_bytes", "app_icon_as_file");
+                    final IconOptions appIconOptions = includeAppIcon ? IconOptions.fromMethodCall(call) : null;
+                    final Set<String> fields = InstalledAppsRequest.getFields((Map<?, ?>) call.arguments);
+                    runInBackground(result, new Callable<Object>() {
+                        @Override
+                        public Object call() {
+                            return getApp(packageName, appIconOptions, iconOutput, fields);
+                        }
+                    });
+                }
+                break;
+            case "getApps":
+                if (!(call.argument("package_names") instanceof List)) {
+                    result.error("ERROR", "Empty or null package names", null);
+                } else {
+                    final List<String> packageNames = call.argument("package_names");
+                    final InstalledAppsRequest request = new InstalledAppsRequest((Map<?, ?>) call.arguments);
+                    runInBackground(result, new Callable<Object>() {
+                        @Override
+                        public Object call() {
+                            return getApps(packageNames, request);
+                        }
+                    });
+                }
+                break;
+            case "getAppIcons":
+                if (!(call.argument("package_names") instanceof List) || !(call.argument("request_id") instanceof Integer)) {
+                    result.error("ERROR", "Empty or null package names or request id", null);
+                } else {
+                    final List<String> packageNames = call.argument("package_names");
+                    int requestId = call.argument("request_id");
+                    int priority = call.argument("priority") instanceof Integer ? (Integer) call.argument("priority") : 0;
+                    appIconsQueue.submit(requestId, packageNames, IconOptions.fromMethodCall(call), priority, new AppIconsQueue.Callback() {
+                        @Override
+                        public void onIconsAvailable(Map<String, byte[]> icons) {
+                            postSuccess(result, icons);
+                        }
+                    });
+                }
+                break;
+            case "cancelAppIcons":
+                if (!(call.argument("request_id") instanceof Integer)) {
+                    result.error("ERROR", "Empty or null request id", null);
+                } else {
+                    int requestId = call.argument("request_id");
+                    result.success(appIconsQueue.cancel(requestId));
+                }
+                break;
+            case "searchApps":
+                if (!(call.argument("query") instanceof String)) {
+                    result.error("ERROR", "Null query", null);
+                } else {
+                    final String query = call.argument("query");
+                    final int limit = call.argument("limit") instanceof Integer ? (Integer) call.argument("limit") : 0;
+                    final boolean includeSystemApps = Boolean.TRUE.equals(call.argument("system_apps"));
+                    // Before the index is built, so that no change is missed
+                    core.observeSearchIndex();
+                    runInBackground(result, new Callable<Object>() {
+                        @Override
+                        public Object call() {
+                            return searchApps(query, limit, includeSystemApps);
+                        }
+                    });
+                }
+                break;
+            case "areAppsInstalled":
+                if (!(call.argument("package_names") instanceof List)) {
+                    result.error("ERROR", "Empty or null package names", null);
+                } else {
+                    final List<String> packageNames = call.argument("package_names");
+                    final InstalledAppsRequest request = new InstalledAppsRequest((Map<?, ?>) call.arguments);
+                    runInBackground(result, new Callable<Object>() {
+                        @Override
+                        public Object call() {
+                            return areAppsInstalled(packageNames, request.maxParallelism);
+                        }
+                    });
                 }
                 break;
             case "isAppInstalled":
                 if (!call.hasArgument("package_name") || TextUtils.isEmpty(call.argument("package_name").toString())) {
                     result.error("ERROR", "Empty or null package name", null);
                 } else {
-                    String packageName = call.argument("package_name").toString();
-                    result.success(isAppInstalled(packageName));
+                    final String packageName = call.argument("package_name").toString();
+                    runInBackground(result, new Callable<Object>() {
+                        @Override
+                        public Object call() {
+                            return isAppInstalled(packageName);
+                        }
+                    });
                 }
                 break;
             case "openApp":
                 if (!call.hasArgument("package_name") || TextUtils.isEmpty(call.argument("package_name").toString())) {
                     result.error("ERROR", "Empty or null package name", null);
                 } else {
-                    String packageName = call.argument("package_name").toString();
-                    result.success(openApp(packageName));
+                    final String packageName = call.argument("package_name").toString();
+                    runInBackground(result, new Callable<Object>() {
+                        @Override
+                        public Object call() {
+                            return openApp(packageName);
+                        }
+                    });
                 }
                 break;
             case "openAppSettings":
                 if (!call.hasArgument("package_name") || TextUtils.isEmpty(call.argument("package_name").toString())) {
                     result.error("ERROR", "Empty or null package name", null);
                 } else {
-                    String packageName = call.argument("package_name").toString();
-                    result.success(openAppSettings(packageName));
+                    final String packageName = call.argument("package_name").toString();
+                    runInBackground(result, new Callable<Object>() {
+                        @Override
+                        public Object call() {
+                            return openAppSettings(packageName);
+                        }
+                    });
                 }
                 break;
             case "uninstallApp":
                 if (!call.hasArgument("package_name") || TextUtils.isEmpty(call.argument("package_name").toString())) {
                     result.error("ERROR", "Empty or null package name", null);
                 } else {
-                    String packageName = call.argument("package_name").toString();
-                    result.success(uninstallApp(packageName));
+                    final String packageName = call.argument("package_name").toString();
+                    runInBackground(result, new Callable<Object>() {
+                        @Override
+                        public Object call() {
+                            return uninstallApp(packageName);
+                        }
+                    });
                 }
                 break;
             default:
@@ -141,58 +335,338 @@ public class DeviceAppsPlugin implements
         }
     }
 
-    private void fetchInstalledApps(final boolean includeSystemApps, final boolean includeAppIcons, final boolean onlyAppsWithLaunchIntent, final InstalledAppsCallback callback) {
+    /**
+     * Calls to the {@link PackageManager} are IPCs, which should not be made from the main
+     * thread. The result is then sent back on the main thread.
+     */
+    private void runInBackground(final Result result, final Callable<Object> task) {
+        asyncWork.run(new Runnable() {
+            @Override
+            public void run() {
+                Object value;
+
+                try {
+                    value = task.call();
+                } catch (Exception e) {
+                    Log.e(LOG_TAG, "Unable to process the method call", e);
+                    postError(result, e);
+                    return;
+                }
+
+                postSuccess(result, value);
+            }
+        });
+    }
+
+    private void postSuccess(final Result result, final Object value) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                result.success(value);
+            }
+        });
+    }
+
+    private void postError(final Result result, final Exception exception) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                result.error("ERROR", exception.getMessage(), null);
+            }
+        });
+    }
+
+    /**
+     * Identical (or narrower) concurrent requests share the same listing
+     */
+    private void fetchInstalledApps(final InstalledAppsRequest request, final InstalledAppsCallback callback) {
+        final InstalledAppsBatches.Batch batch = installedAppsBatches.add(request, callback);
+        if (batch == null) {
+            return;
+        }
+
         asyncWork.run(new Runnable() {
 
             @Override
             public void run() {
-                List<Map<String, Object>> installedApps = getInstalledApps(includeSystemApps, includeAppIcons, onlyAppsWithLaunchIntent);
+                if (!installedAppsBatches.start(batch)) {
+                    return;
+                }
 
-                if (callback != null) {
-                    callback.onInstalledAppsListAvailable(installedApps);
+                List<Map<String, Object>> installedApps;
+                try {
+                    installedApps = getInstalledApps(batch.request);
+                } catch (Exception e) {
+                    Log.e(LOG_TAG, "Unable to list the installed apps", e);
+                    installedAppsBatches.fail(batch, e);
+                    return;
                 }
+
+                installedAppsBatches.finish(batch, installedApps);
+                saveCache();
             }
 
         });
     }
 
-    private List<Map<String, Object>> getInstalledApps(boolean includeSystemApps, boolean includeAppIcons, boolean onlyAppsWithLaunchIntent) {
+    private List<Map<String, Object>> getInstalledApps(InstalledAppsRequest request) {
         if (context == null) {
             Log.e(LOG_TAG, "Context is null");
             return new ArrayList<>(0);
         }
 
-        PackageManager packageManager = context.getPackageManager();
-        List<PackageInfo> apps = packageManager.getInstalledPackages(0);
-        List<Map<String, Object>> installedApps = new ArrayList<>(apps.size());
+        List<PackageInfo> apps = getInstalledPackages();
+        return getAppsData(apps, request);
+    }
+
+    /**
+     * Also removes uninstalled apps from the cache
+     */
+    List<PackageInfo> getInstalledPackages() {
+        Context context = this.context;
+        if (context == null) {
+            return new ArrayList<>(0);
+        }
+
+        long start = stats.begin(PerfStats.PHASE_LIST_PACKAGES);
+        List<PackageInfo> apps = context.getPackageManager().getInstalledPackages(0);
+        stats.end(PerfStats.PHASE_LIST_PACKAGES, start);
+        stats.increment(PerfStats.COUNTER_PACKAGES_SCANNED, apps.size());
+
+        if (appDataCache != null) {
+            Set<String> packageNames = new HashSet<>(apps.size() * 2);
+            for (PackageInfo packageInfo : apps) {
+                packageNames.add(packageInfo.packageName);
+            }
+
+            appDataCache.retainAll(packageNames);
+        }
+
+        return apps;
+    }
+
+    /**
+     * The data of each app is computed in parallel, but the order of the list is the one
+     * of {@code apps}. Apps excluded by the request are not in the list.
+     */
+    List<Map<String, Object>> getAppsData(final List<PackageInfo> apps, final InstalledAppsRequest request) {
+        return buildAppsData(filterPackages(apps, request), request);
+    }
+
+    /**
+     * Applies the filters of the request (system apps, launch intent and query), then sorts
+     * and paginates the list (if requested), without computing the data of the apps
+     */
+    List<AppsQuery.Candidate> filterPackages(final List<PackageInfo> apps, final InstalledAppsRequest request) {
+        Context context = this.context;
+        if (context == null) {
+            return new ArrayList<>(0);
+        }
+
+        final PackageManager packageManager = context.getPackageManager();
+        final AppsQuery query = request.query;
+        final boolean needsLabel = query != null && query.needsLabel();
+        // One query for all packages (the list of apps may have changed since the last call)
+        final Map<String, Intent> launchIntents = request.onlyAppsWithLaunchIntent ? launcherIndex.refresh(packageManager) : null;
 
-        for (PackageInfo packageInfo : apps) {
-            if (!includeSystemApps && isSystemApp(packageInfo)) {
-                continue;
+        long start = stats.begin(PerfStats.PHASE_FILTER);
+
+        List<AppsQuery.Candidate> results = asyncWork.runInParallel(apps.size(), request.maxParallelism, new AsyncWork.ParallelWork<AppsQuery.Candidate>() {
+            @Override
+            public Worker<AppsQuery.Candidate> createWorker() {
+                return new Worker<AppsQuery.Candidate>() {
+                    @Override
+                    public AppsQuery.Candidate process(int index) {
+                        PackageInfo packageInfo = apps.get(index);
+
+                        if (!request.includeSystemApps && isSystemApp(packageInfo)) {
+                            return null;
+                        }
+                        if (launchIntents != null && !launchIntents.containsKey(packageInfo.packageName)) {
+                            return null;
+                        }
+
+                        String label = needsLabel ? getLabel(packageManager, packageInfo) : null;
+                        if (query != null && !query.matches(packageInfo, label)) {
+                            return null;
+                        }
+
+                        return new AppsQuery.Candidate(packageInfo, label);
+                    }
+                };
             }
-            if (onlyAppsWithLaunchIntent && packageManager.getLaunchIntentForPackage(packageInfo.packageName) == null) {
-                continue;
+        });
+
+        List<AppsQuery.Candidate> candidates = new ArrayList<>(results.size());
+        for (AppsQuery.Candidate candidate : results) {
+            if (candidate != null) {
+                candidates.add(candidate);
             }
+        }
 
-            Map<String, Object> map = getAppData(packageManager,
-                    packageInfo,
-                    packageInfo.applicationInfo,
-                    includeAppIcons);
-            installedApps.add(map);
+        if (query != null) {
+            candidates = query.sortAndPaginate(candidates);
         }
 
-        return installedApps;
+        stats.end(PerfStats.PHASE_FILTER, start);
+        stats.increment(PerfStats.COUNTER_PACKAGES_FILTERED_OUT, apps.size() - candidates.size());
+
+        return candidates;
+    }
+
+    /**
+     * Computes the data of each app in parallel (without any filter).
+     * The labels loaded by {@link #filterPackages(List, InstalledAppsRequest)} are reused.
+     */
+    List<Map<String, Object>> buildAppsData(final List<AppsQuery.Candidate> apps, final InstalledAppsRequest request) {
+        Context context = this.context;
+        if (context == null) {
+            return new ArrayList<>(0);
+        }
+
+        final PackageManager packageManager = context.getPackageManager();
+
+        return asyncWork.runInParallel(apps.size(), request.maxParallelism, new AsyncWork.ParallelWork<Map<String, Object>>() {
+            @Override
+            public Worker<Map<String, Object>> createWorker() {
+                final IconRenderer iconRenderer = request.iconOptions != null ? new IconRenderer(request.iconOptions, stats) : null;
+
+                return new Worker<Map<String, Object>>() {
+                    @Override
+                    public Map<String, Object> process(int index) {
+                        AppsQuery.Candidate candidate = apps.get(index);
+
+                        return getAppData(packageManager,
+                                candidate.packageInfo,
+                                candidate.packageInfo.applicationInfo,
+                                candidate.label,
+                                iconRenderer,
+                                request.iconOutput,
+                                request.fields);
+                    }
+                };
+            }
+        });
+    }
+
+    /**
+     * Uses the cached data if possible
+     */
+    private String getLabel(PackageManager packageManager, PackageInfo packageInfo) {
+        Object cachedLabel = appDataCache != null ? appDataCache.getField(packageInfo, AppDataConstants.APP_NAME) : null;
+
+        if (cachedLabel instanceof String) {
+            return (String) cachedLabel;
+        }
+
+        return loadLabel(packageManager, packageInfo);
+    }
+
+    /**
+     * The resources of the app are only loaded if the label is not in the {@link LabelCache}
+     */
+    private String loadLabel(PackageManager packageManager, PackageInfo packageInfo) {
+        LabelCache cache = labelCache;
+        String locale = cache != null ? cache.getLocale() : null;
+        String label = cache != null ? cache.get(packageInfo, locale) : null;
+
+        if (label != null) {
+            stats.increment(PerfStats.COUNTER_LABEL_CACHE_HITS, 1);
+            return label;
+        }
+
+        long start = stats.begin(PerfStats.PHASE_LOAD_LABEL);
+        label = packageInfo.applicationInfo.loadLabel(packageManager).toString();
+        stats.end(PerfStats.PHASE_LOAD_LABEL, start);
+
+        if (cache != null) {
+            cache.put(packageInfo, locale, label);
+        }
+
+        return label;
+    }
+
+    /**
+     * The apps are encoded with the {@link CompactAppsEncoder} if requested
+     */
+    Object serializeApps(List<Map<String, Object>> apps, InstalledAppsRequest request) {
+        if (!request.compact) {
+            return apps;
+        }
+
+        long start = stats.begin(PerfStats.PHASE_COMPACT_ENCODING);
+        byte[] bytes = CompactAppsEncoder.encode(apps);
+        stats.end(PerfStats.PHASE_COMPACT_ENCODING, start);
+        stats.increment(PerfStats.COUNTER_BYTES_SERIALIZED, bytes.length);
+        return bytes;
+    }
+
+    /**
+     * Used to measure cold listings (eg: in benchmarks)
+     */
+    void clearCaches() {
+        if (appDataCache != null) {
+            appDataCache.clear();
+        }
+
+        if (iconCache != null) {
+            iconCache.clear();
+        }
+
+        if (labelCache != null) {
+            labelCache.clear();
+        }
+
+        if (apkDigestCache != null) {
+            apkDigestCache.clear();
+        }
+
+        if (launcherIndex != null) {
+            launcherIndex.invalidate();
+        }
+
+        if (searchIndex != null) {
+            searchIndex.clear();
+        }
+
+        saveCache();
+    }
+
+    void saveCache() {
+        if (appDataCache != null) {
+            appDataCache.saveSnapshot();
+        }
+
+        if (apkDigestCache != null) {
+            apkDigestCache.saveSnapshot();
+        }
     }
 
     private boolean openApp(@NonNull String packageName) {
+        PackageManager packageManager = context.getPackageManager();
+
+        // The activity was already resolved by the index
+        Intent indexedIntent = launcherIndex.getLaunchIntent(packageManager, packageName);
+        if (indexedIntent != null) {
+            try {
+                context.startActivity(indexedIntent);
+                return true;
+            } catch (ActivityNotFoundException e) {
+                // The app was uninstalled since the index was built
+                launcherIndex.invalidate();
+            }
+        }
+
         if (!isAppInstalled(packageName)) {
             Log.w(LOG_TAG, "Application with package name \"" + packageName + "\" is not installed on this device");
             return false;
         }
 
-        Intent launchIntent = context.getPackageManager().getLaunchIntentForPackage(packageName);
+        // The app may have been installed since the index was built
+        Intent launchIntent = packageManager.getLaunchIntentForPackage(packageName);
 
         if (IntentUtils.isIntentOpenable(launchIntent, context)) {
+            launcherIndex.invalidate();
             context.startActivity(launchIntent);
             return true;
         }
@@ -223,55 +697,333 @@ public class DeviceAppsPlugin implements
     }
 
     private boolean isAppInstalled(@NonNull String packageName) {
+        return isAppInstalled(context.getPackageManager(), packageName);
+    }
+
+    private static boolean isAppInstalled(@NonNull PackageManager packageManager, @NonNull String packageName) {
         try {
-            context.getPackageManager().getPackageInfo(packageName, 0);
+            packageManager.getPackageInfo(packageName, 0);
             return true;
         } catch (PackageManager.NameNotFoundException ignored) {
             return false;
         }
     }
 
-    private Map<String, Object> getApp(String packageName, boolean includeAppIcon) {
+    /**
+     * Batch version of {@link #isAppInstalled(String)}: the key is the package name
+     */
+    private Map<String, Boolean> areAppsInstalled(@NonNull final List<String> packageNames, int maxParallelism) {
+        final PackageManager packageManager = context.getPackageManager();
+
+        List<Boolean> results = asyncWork.runInParallel(packageNames.size(), maxParallelism, new AsyncWork.ParallelWork<Boolean>() {
+            @Override
+            public Worker<Boolean> createWorker() {
+                return new Worker<Boolean>() {
+                    @Override
+                    public Boolean process(int index) {
+                        return isAppInstalled(packageManager, packageNames.get(index));
+                    }
+                };
+            }
+        });
+
+        Map<String, Boolean> installedApps = new HashMap<>(packageNames.size());
+        for (int i = 0; i < packageNames.size(); i++) {
+            installedApps.put(packageNames.get(i), results.get(i));
+        }
+
+        return installedApps;
+    }
+
+    /**
+     * The index is built by the first search, then only the packages which have changed
+     * (according to {@link DeviceAppsCore#observeSearchIndex()}) are refreshed
+     */
+    private List<Map<String, Object>> searchApps(@NonNull String query, int limit, boolean includeSystemApps) {
+        final PackageManager packageManager = context.getPackageManager();
+        final SearchIndex index = searchIndex;
+
+        if (!index.isBuilt()) {
+            buildSearchIndex(packageManager, index);
+        } else {
+            for (String packageName : index.getDirtyPackages()) {
+                try {
+                    PackageInfo packageInfo = packageManager.getPackageInfo(packageName, 0);
+                    index.put(packageInfo, getLabel(packageManager, packageInfo));
+                } catch (PackageManager.NameNotFoundException e) {
+                    index.remove(packageName);
+                }
+            }
+        }
+
+        long start = stats.begin(PerfStats.PHASE_SEARCH);
+        List<PackageInfo> matches = index.search(query, limit, includeSystemApps);
+        stats.end(PerfStats.PHASE_SEARCH, start);
+
+        List<Map<String, Object>> apps = new ArrayList<>(matches.size());
+        for (PackageInfo packageInfo : matches) {
+            apps.add(getAppData(packageManager, packageInfo, packageInfo.applicationInfo, null, null, InstalledAppsRequest.ICON_OUTPUT_BASE64, null));
+        }
+
+        return apps;
+    }
+
+    private void buildSearchIndex(final PackageManager packageManager, final SearchIndex index) {
+        final List<PackageInfo> apps = getInstalledPackages();
+        asyncWork.runInParallel(apps.size(), 0, new AsyncWork.ParallelWork<Void>() {
+            @Override
+            public Worker<Void> createWorker() {
+                return new Worker<Void>() {
+                    @Override
+                    public Void process(int position) {
+                        PackageInfo packageInfo = apps.get(position);
+                        index.put(packageInfo, getLabel(packageManager, packageInfo));
+                        return null;
+                    }
+                };
+            }
+        });
+
+        index.setBuilt();
+    }
+
+    /**
+     * Batch version of {@link #getApp(String, IconOptions, int, Set)}: the key is the package
+     * name and the value is null if the app is not installed
+     */
+    private Map<String, Map<String, Object>> getApps(@NonNull final List<String> packageNames, final InstalledAppsRequest request) {
+        final PackageManager packageManager = context.getPackageManager();
+
+        List<Map<String, Object>> results = asyncWork.runInParallel(packageNames.size(), request.maxParallelism, new AsyncWork.ParallelWork<Map<String, Object>>() {
+            @Override
+            public Worker<Map<String, Object>> createWorker() {
+                final IconRenderer iconRenderer = request.iconOptions != null ? new IconRenderer(request.iconOptions, stats) : null;
+
+                return new Worker<Map<String, Object>>() {
+                    @Override
+                    public Map<String, Object> process(int index) {
+                        return getApp(packageManager, packageNames.get(index), iconRenderer, request.iconOutput, request.fields);
+                    }
+                };
+            }
+        });
+
+        Map<String, Map<String, Object>> apps = new HashMap<>(packageNames.size());
+        for (int i = 0; i < packageNames.size(); i++) {
+            apps.put(packageNames.get(i), results.get(i));
+        }
+
+        return apps;
+    }
+
+    Map<String, Object> getApp(String packageName, IconOptions iconOptions, int iconOutput, Set<String> fields) {
+        return getApp(context.getPackageManager(),
+                packageName,
+                iconOptions != null ? new IconRenderer(iconOptions, stats) : null,
+                iconOutput,
+                fields);
+    }
+
+    private Map<String, Object> getApp(PackageManager packageManager, String packageName, IconRenderer iconRenderer, int iconOutput, Set<String> fields) {
         try {
-            PackageManager packageManager = context.getPackageManager();
             PackageInfo packageInfo = packageManager.getPackageInfo(packageName, 0);
 
             return getAppData(packageManager,
                     packageInfo,
                     packageInfo.applicationInfo,
-                    includeAppIcon);
+                    null,
+                    iconRenderer,
+                    iconOutput,
+                    fields);
         } catch (PackageManager.NameNotFoundException ignored) {
             return null;
         }
     }
 
+    /**
+     * @param label        label of the app if it is already loaded, null otherwise
+     * @param iconRenderer null if the icon is not requested
+     * @param iconOutput   one of the {@code InstalledAppsRequest.ICON_OUTPUT_} constants
+     * @param fields       keys of {@link AppDataConstants} to compute (null for all of them).
+     *                     The package name is always included.
+     */
     private Map<String, Object> getAppData(PackageManager packageManager,
                                            PackageInfo pInfo,
                                            ApplicationInfo applicationInfo,
-                                           boolean includeAppIcon) {
-        Map<String, Object> map = new HashMap<>();
-        map.put(AppDataConstants.APP_NAME, pInfo.applicationInfo.loadLabel(packageManager).toString());
-        map.put(AppDataConstants.APK_FILE_PATH, applicationInfo.sourceDir);
-        map.put(AppDataConstants.PACKAGE_NAME, pInfo.packageName);
-        map.put(AppDataConstants.VERSION_CODE, pInfo.versionCode);
-        map.put(AppDataConstants.VERSION_NAME, pInfo.versionName);
-        map.put(AppDataConstants.DATA_DIR, applicationInfo.dataDir);
-        map.put(AppDataConstants.SYSTEM_APP, isSystemApp(pInfo));
-        map.put(AppDataConstants.INSTALL_TIME, pInfo.firstInstallTime);
-        map.put(AppDataConstants.UPDATE_TIME, pInfo.lastUpdateTime);
-        map.put(AppDataConstants.IS_ENABLED, applicationInfo.enabled);
-
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            map.put(AppDataConstants.CATEGORY, pInfo.applicationInfo.category);
+                                           String label,
+                                           IconRenderer iconRenderer,
+                                           int iconOutput,
+                                           Set<String> fields) {
+        Map<String, Object> map;
+
+        // Without the label, all fields are cheap to compute: no need to use the cache
+        if (fields == null || fields.contains(AppDataConstants.APP_NAME)) {
+            map = appDataCache != null ? appDataCache.get(pInfo) : null;
+
+            if (map == null) {
+                long start = stats.begin(PerfStats.PHASE_APP_DATA);
+                map = buildAppData(packageManager, pInfo, applicationInfo, label, null);
+                stats.end(PerfStats.PHASE_APP_DATA, start);
+
+                if (appDataCache != null) {
+                    appDataCache.put(pInfo, map);
+                }
+            } else {
+                stats.increment(PerfStats.COUNTER_APP_DATA_CACHE_HITS, 1);
+            }
+
+            if (fields != null) {
+                map.keySet().retainAll(fields);
+                map.put(AppDataConstants.PACKAGE_NAME, pInfo.packageName);
+            }
+        } else {
+            long start = stats.begin(PerfStats.PHASE_APP_DATA);
+            map = buildAppData(packageManager, pInfo, applicationInfo, label, fields);
+            stats.end(PerfStats.PHASE_APP_DATA, start);
+        }
+
+        // Never part of the default fields (the APKs have to be read)
+        if (fields != null && fields.contains(AppDataConstants.APK_DIGEST)) {
+            long start = stats.begin(PerfStats.PHASE_APK_DIGEST);
+            map.put(AppDataConstants.APK_DIGEST, apkDigestCache != null ? apkDigestCache.getDigest(pInfo) : null);
+            stats.end(PerfStats.PHASE_APK_DIGEST, start);
+        }
+        if (fields != null && fields.contains(AppDataConstants.APK_SIZE)) {
+            map.put(AppDataConstants.APK_SIZE, ApkDigestCache.getSize(applicationInfo));
         }
 
-        if (includeAppIcon) {
+        if (iconRenderer != null && iconOutput == InstalledAppsRequest.ICON_OUTPUT_FILE) {
+            File iconFile = getAppIconFile(packageManager, pInfo, iconRenderer);
+
+            if (iconFile != null) {
+                map.put(AppDataConstants.APP_ICON_FILE, iconFile.getPath());
+            }
+        } else if (iconRenderer != null) {
+            byte[] icon = getAppIcon(packageManager, pInfo, iconRenderer);
+
+            if (icon != null) {
+                map.put(AppDataConstants.APP_ICON, iconOutput == InstalledAppsRequest.ICON_OUTPUT_BYTES ? icon : encodeToBase64(icon));
+            }
+        }
+
+        return map;
+    }
+
+    /**
+     * @return null if the app is not installed
+     */
+    byte[] getAppIcon(@NonNull String packageName, @NonNull IconRenderer iconRenderer) {
+        Context context = this.context;
+        if (context == null) {
+            return null;
+        }
+
+        PackageManager packageManager = context.getPackageManager();
+
+        try {
+            PackageInfo pInfo = packageManager.getPackageInfo(packageName, 0);
+            return getAppIcon(packageManager, pInfo, iconRenderer);
+        } catch (PackageManager.NameNotFoundException ignored) {
+            return null;
+        }
+    }
+
+    /**
+     * The icon is only encoded (and written) if there is no file for this version of the app.
+     * Its content is never kept in memory.
+     */
+    private File getAppIconFile(PackageManager packageManager, PackageInfo pInfo, IconRenderer iconRenderer) {
+        if (iconCache == null) {
+            return null;
+        }
+
+        IconOptions options = iconRenderer.getOptions();
+        File file = iconCache.getFile(pInfo.packageName, pInfo.lastUpdateTime, options);
+
+        if (file == null) {
             try {
-                Drawable icon = packageManager.getApplicationIcon(pInfo.packageName);
-                String encodedImage = encodeToBase64(getBitmapFromDrawable(icon), Bitmap.CompressFormat.PNG, 100);
-                map.put(AppDataConstants.APP_ICON, encodedImage);
+                long start = stats.begin(PerfStats.PHASE_ICON_LOAD);
+                Drawable drawable = packageManager.getApplicationIcon(pInfo.packageName);
+                stats.end(PerfStats.PHASE_ICON_LOAD, start);
+
+                file = iconCache.putFile(pInfo.packageName, pInfo.lastUpdateTime, options, iconRenderer.encode(drawable));
             } catch (PackageManager.NameNotFoundException ignored) {
+                return null;
             }
+        } else {
+            stats.increment(PerfStats.COUNTER_ICON_CACHE_HITS, 1);
+        }
+
+        return file;
+    }
+
+    private byte[] getAppIcon(PackageManager packageManager, PackageInfo pInfo, IconRenderer iconRenderer) {
+        IconOptions options = iconRenderer.getOptions();
+        byte[] icon = iconCache != null ? iconCache.get(pInfo.packageName, pInfo.lastUpdateTime, options) : null;
+
+        if (icon == null) {
+            try {
+                long start = stats.begin(PerfStats.PHASE_ICON_LOAD);
+                Drawable drawable = packageManager.getApplicationIcon(pInfo.packageName);
+                stats.end(PerfStats.PHASE_ICON_LOAD, start);
+
+                icon = iconRenderer.encode(drawable);
+            } catch (PackageManager.NameNotFoundException ignored) {
+                return null;
+            }
+
+            if (iconCache != null) {
+                iconCache.put(pInfo.packageName, pInfo.lastUpdateTime, options, icon);
+            }
+        } else {
+            stats.increment(PerfStats.COUNTER_ICON_CACHE_HITS, 1);
+        }
+
+        return icon;
+    }
+
+    /**
+     * @param label  label of the app if it is already loaded, null otherwise
+     * @param fields keys of {@link AppDataConstants} to compute (null for all of them)
+     */
+    private Map<String, Object> buildAppData(PackageManager packageManager,
+                                             PackageInfo pInfo,
+                                             ApplicationInfo applicationInfo,
+                                             String label,
+                                             Set<String> fields) {
+        Map<String, Object> map = new HashMap<>();
+        map.put(AppDataConstants.PACKAGE_NAME, pInfo.packageName);
+
+        if (fields == null || fields.contains(AppDataConstants.APP_NAME)) {
+            map.put(AppDataConstants.APP_NAME, label != null ? label : loadLabel(packageManager, pInfo));
+        }
+        if (fields == null || fields.contains(AppDataConstants.APK_FILE_PATH)) {
+            map.put(AppDataConstants.APK_FILE_PATH, applicationInfo.sourceDir);
+        }
+        if (fields == null || fields.contains(AppDataConstants.VERSION_CODE)) {
+            map.put(AppDataConstants.VERSION_CODE, pInfo.versionCode);
+        }
+        if (fields == null || fields.contains(AppDataConstants.VERSION_NAME)) {
+            map.put(AppDataConstants.VERSION_NAME, pInfo.versionName);
+        }
+        if (fields == null || fields.contains(AppDataConstants.DATA_DIR)) {
+            map.put(AppDataConstants.DATA_DIR, applicationInfo.dataDir);
+        }
+        if (fields == null || fields.contains(AppDataConstants.SYSTEM_APP)) {
+            map.put(AppDataConstants.SYSTEM_APP, isSystemApp(pInfo));
+        }
+        if (fields == null || fields.contains(AppDataConstants.INSTALL_TIME)) {
+            map.put(AppDataConstants.INSTALL_TIME, pInfo.firstInstallTime);
+        }
+        if (fields == null || fields.contains(AppDataConstants.UPDATE_TIME)) {
+            map.put(AppDataConstants.UPDATE_TIME, pInfo.lastUpdateTime);
+        }
+        if (fields == null || fields.contains(AppDataConstants.IS_ENABLED)) {
+            map.put(AppDataConstants.IS_ENABLED, applicationInfo.enabled);
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && (fields == null || fields.contains(AppDataConstants.CATEGORY))) {
+            map.put(AppDataConstants.CATEGORY, pInfo.applicationInfo.category);
         }
 
         return map;
@@ -295,47 +1047,90 @@ public class DeviceAppsPlugin implements
         return false;
     }
 
+    private DeviceAppsChangedListener getAppsListener() {
+        if (appsListener == null) {
+            appsListener = new DeviceAppsChangedListener(this, core.packagesReceiver);
+        }
+
+        return appsListener;
+    }
+
     @Override
     public void onListen(Object arguments, final EventChannel.EventSink events) {
         if (context != null) {
-            if (appsListener == null) {
-                appsListener = new DeviceAppsChangedListener(this);
+            eventsSink = events;
+            getAppsListener().register(context, events);
+        }
+    }
+
+    private final EventChannel.StreamHandler batchedEventsStreamHandler = new EventChannel.StreamHandler() {
+
+        private EventChannel.EventSink sink;
+
+        @Override
+        public void onListen(Object arguments, EventChannel.EventSink events) {
+            if (context != null) {
+                Object window = arguments instanceof Map ? ((Map<?, ?>) arguments).get("window_ms") : null;
+                long windowMs = window instanceof Number ? ((Number) window).longValue() : DEFAULT_EVENTS_WINDOW_MS;
+
+                sink = events;
+                getAppsListener().registerBatched(context, events, windowMs);
             }
+        }
 
-            appsListener.register(context, events);
+        @Override
+        public void onCancel(Object arguments) {
+            if (context != null && appsListener != null && sink != null) {
+                appsListener.unregister(context, sink);
+            }
+
+            sink = null;
         }
+    };
+
+    @Override
+    public Map<String, Object> onPackageInstalled(String packageName) {
+        return getListenerData(packageName, AppDataEventConstants.EVENT_TYPE_INSTALLED);
     }
 
     @Override
-    public void onPackageInstalled(String packageName, EventChannel.EventSink events) {
-        events.success(getListenerData(packageName, AppDataEventConstants.EVENT_TYPE_INSTALLED));
+    public Map<String, Object> onPackageUpdated(String packageName) {
+        return getListenerData(packageName, AppDataEventConstants.EVENT_TYPE_UPDATED);
     }
 
     @Override
-    public void onPackageUpdated(String packageName, EventChannel.EventSink events) {
-        events.success(getListenerData(packageName, AppDataEventConstants.EVENT_TYPE_UPDATED));
+    public Map<String, Object> onPackageUninstalled(String packageName) {
+        return getListenerData(packageName, AppDataEventConstants.EVENT_TYPE_UNINSTALLED);
     }
 
     @Override
-    public void onPackageUninstalled(String packageName, EventChannel.EventSink events) {
-        events.success(getListenerData(packageName, AppDataEventConstants.EVENT_TYPE_UNINSTALLED));
+    public Map<String, Object> onPackageChanged(String packageName) {
+        return getListenerData(packageName, AppDataEventConstants.EVENT_TYPE_CHANGED);
     }
 
     @Override
-    public void onPackageChanged(String packageName, EventChannel.EventSink events) {
-        Map<String, Object> listenerData = getListenerData(packageName, null);
+    public void onPackagesChanged(final Map<String, String> events, final EventChannel.EventSink sink) {
+        asyncWork.run(new Runnable() {
+            @Override
+            public void run() {
+                final List<Map<String, Object>> data = new ArrayList<>(events.size());
 
-        if (listenerData.get(AppDataConstants.IS_ENABLED) == Boolean.valueOf(true)) {
-            listenerData.put(AppDataEventConstants.EVENT_TYPE, AppDataEventConstants.EVENT_TYPE_DISABLED);
-        } else {
-            listenerData.put(AppDataEventConstants.EVENT_TYPE, AppDataEventConstants.EVENT_TYPE_ENABLED);
-        }
+                for (Map.Entry<String, String> event : events.entrySet()) {
+                    data.add(getListenerData(event.getKey(), event.getValue()));
+                }
 
-        events.success(listenerData);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        sink.success(data);
+                    }
+                });
+            }
+        });
     }
 
     Map<String, Object> getListenerData(String packageName, String event) {
-        Map<String, Object> data = getApp(packageName, false);
+        Map<String, Object> data = getApp(packageName, null, InstalledAppsRequest.ICON_OUTPUT_BASE64, null);
 
         // The app is not installed
         if (data == null) {
@@ -343,7 +1138,13 @@ public class DeviceAppsPlugin implements
             data.put(AppDataEventConstants.PACKAGE_NAME, packageName);
         }
 
-        if (event != null) {
+        if (AppDataEventConstants.EVENT_TYPE_CHANGED.equals(event)) {
+            if (data.get(AppDataConstants.IS_ENABLED) == Boolean.valueOf(true)) {
+                data.put(AppDataEventConstants.EVENT_TYPE, AppDataEventConstants.EVENT_TYPE_DISABLED);
+            } else {
+                data.put(AppDataEventConstants.EVENT_TYPE, AppDataEventConstants.EVENT_TYPE_ENABLED);
+            }
+        } else if (event != null) {
             data.put(AppDataEventConstants.EVENT_TYPE, event);
         }
 
@@ -352,15 +1153,15 @@ public class DeviceAppsPlugin implements
 
     @Override
     public void onCancel(Object arguments) {
-        if (context != null && appsListener != null) {
-            appsListener.unregister(context);
+        if (context != null && appsListener != null && eventsSink != null) {
+            appsListener.unregister(context, eventsSink);
         }
+
+        eventsSink = null;
     }
 
     @Override
     public void onDetachedFromEngine(@NonNull FlutterPluginBinding binding) {
-        asyncWork.stop();
-
         if (methodChannel != null) {
             methodChannel.setMethodCallHandler(null);
             methodChannel = null;
@@ -371,11 +1172,85 @@ public class DeviceAppsPlugin implements
             eventChannel = null;
         }
 
+        if (batchedEventChannel != null) {
+            batchedEventChannel.setStreamHandler(null);
+            batchedEventChannel = null;
+        }
+
+        if (installedAppsChannel != null) {
+            installedAppsChannel.setStreamHandler(null);
+            installedAppsChannel = null;
+        }
+
+        if (installedAppsStreamHandler != null) {
+            installedAppsStreamHandler.onCancel(null);
+            installedAppsStreamHandler = null;
+        }
+
+        detach();
+    }
+
+    void detach() {
+        if (appsPrefetch != null) {
+            appsPrefetch.cancel();
+            appsPrefetch = null;
+        }
+
+        if (appIconsQueue != null) {
+            appIconsQueue.stop();
+            appIconsQueue = null;
+        }
+
         if (appsListener != null) {
             appsListener.unregister(context);
             appsListener = null;
         }
 
+        // The last engine stops the executor and unregisters the receiver
+        if (core != null) {
+            DeviceAppsCore.release(core);
+            core = null;
+        }
+
         context = null;
+        appDataCache = null;
+        iconCache = null;
+        labelCache = null;
+        apkDigestCache = null;
+        launcherIndex = null;
+        searchIndex = null;
+        installedAppsSync = null;
+    }
+
+    /**
+     * Records the duration of a method call, from its reception to its result
+     */
+    private class TimedResult implements Result {
+        private final Result result;
+        private final String method;
+        private final long startTime;
+
+        TimedResult(Result result, String method) {
+            this.result = result;
+            this.method = method;
+            this.startTime = System.nanoTime();
+        }
+
+        @Override
+        public void success(Object value) {
+            stats.record(PerfStats.METHOD_PREFIX + method, System.nanoTime() - startTime);
+            result.success(value);
+        }
+
+        @Override
+        public void error(String errorCode, String errorMessage, Object errorDetails) {
+            stats.record(PerfStats.METHOD_PREFIX + method, System.nanoTime() - startTime);
+            result.error(errorCode, errorMessage, errorDetails);
+        }
+
+        @Override
+        public void notImplemented() {
+            result.notImplemented();
+        }
     }
 }
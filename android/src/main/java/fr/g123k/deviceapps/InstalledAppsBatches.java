@@ -0,0 +1,179 @@
+package fr.g123k.deviceapps;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import fr.g123k.deviceapps.utils.AppDataConstants;
+
+/**
+ * Concurrent getInstalledApps calls are merged into a single listing when a request
+ * "covers" another one (same filters, with at least the same fields and icons).
+ * The result is then shared by all the callers (without the extra fields or icons).
+ * A new request can also take over the callers of a broader request which hasn't started yet.
+ */
+class InstalledAppsBatches {
+
+    // Guarded by this
+    private final List<Batch> batches = new ArrayList<>();
+
+    /**
+     * @return the batch to run, or null if the request was merged into a pending batch
+     */
+    synchronized Batch add(@NonNull InstalledAppsRequest request, @NonNull InstalledAppsCallback callback) {
+        for (Batch batch : batches) {
+            if (covers(batch.request, request)) {
+                batch.waiters.add(new Waiter(request, callback));
+                return null;
+            }
+        }
+
+        Batch newBatch = new Batch(request);
+        newBatch.waiters.add(new Waiter(request, callback));
+
+        // Batches which haven't started yet and can be satisfied by the new one
+        Iterator<Batch> iterator = batches.iterator();
+        while (iterator.hasNext()) {
+            Batch batch = iterator.next();
+
+            if (!batch.started && covers(request, batch.request)) {
+                newBatch.waiters.addAll(batch.waiters);
+                batch.merged = true;
+                iterator.remove();
+            }
+        }
+
+        batches.add(newBatch);
+        return newBatch;
+    }
+
+    /**
+     * @return false if the batch was merged into another one (and should not run)
+     */
+    synchronized boolean start(@NonNull Batch batch) {
+        if (batch.merged) {
+            return false;
+        }
+
+        batch.started = true;
+        return true;
+    }
+
+    /**
+     * Sends the apps to every caller of the batch
+     */
+    void finish(@NonNull Batch batch, @NonNull List<Map<String, Object>> apps) {
+        for (Waiter waiter : remove(batch)) {
+            waiter.callback.onInstalledAppsListAvailable(project(apps, batch.request, waiter.request));
+        }
+    }
+
+    /**
+     * Sends the error to every caller of the batch
+     */
+    void fail(@NonNull Batch batch, @NonNull Exception exception) {
+        for (Waiter waiter : remove(batch)) {
+            waiter.callback.onInstalledAppsListError(exception);
+        }
+    }
+
+    private synchronized List<Waiter> remove(Batch batch) {
+        batches.remove(batch);
+        return new ArrayList<>(batch.waiters);
+    }
+
+    /**
+     * Whether the result of {@code request} contains everything needed by {@code subRequest}
+     */
+    private static boolean covers(InstalledAppsRequest request, InstalledAppsRequest subRequest) {
+        if (request.includeSystemApps != subRequest.includeSystemApps
+                || request.onlyAppsWithLaunchIntent != subRequest.onlyAppsWithLaunchIntent
+                || request.query != null
+                || subRequest.query != null) {
+            return false;
+        }
+
+        if (request.fields == null) {
+            // The default fields do not include the opt-in ones
+            if (subRequest.fields != null
+                    && (subRequest.fields.contains(AppDataConstants.APK_DIGEST) || subRequest.fields.contains(AppDataConstants.APK_SIZE))) {
+                return false;
+            }
+        } else if (subRequest.fields == null || !request.fields.containsAll(subRequest.fields)) {
+            return false;
+        }
+
+        if (subRequest.iconOptions != null) {
+            return request.iconOptions != null
+                    && request.iconOutput == subRequest.iconOutput
+                    && request.iconOptions.getCacheKey().equals(subRequest.iconOptions.getCacheKey());
+        }
+
+        return true;
+    }
+
+    /**
+     * Removes the fields (and icons) which were not requested by {@code subRequest}
+     */
+    private static List<Map<String, Object>> project(List<Map<String, Object>> apps,
+                                                     InstalledAppsRequest request,
+                                                     InstalledAppsRequest subRequest) {
+        boolean removeIcons = request.iconOptions != null && subRequest.iconOptions == null;
+        boolean retainFields = subRequest.fields != null && !subRequest.fields.equals(request.fields);
+
+        if (!removeIcons && !retainFields) {
+            return apps;
+        }
+
+        List<Map<String, Object>> projectedApps = new ArrayList<>(apps.size());
+        for (Map<String, Object> app : apps) {
+            Map<String, Object> projectedApp = new HashMap<>(app);
+            // Either the content or the file of the icon, depending on the batch
+            Object icon = projectedApp.remove(AppDataConstants.APP_ICON);
+            Object iconFile = projectedApp.remove(AppDataConstants.APP_ICON_FILE);
+
+            if (retainFields) {
+                projectedApp.keySet().retainAll(subRequest.fields);
+                projectedApp.put(AppDataConstants.PACKAGE_NAME, app.get(AppDataConstants.PACKAGE_NAME));
+            }
+
+            if (!removeIcons && icon != null) {
+                projectedApp.put(AppDataConstants.APP_ICON, icon);
+            }
+            if (!removeIcons && iconFile != null) {
+                projectedApp.put(AppDataConstants.APP_ICON_FILE, iconFile);
+            }
+
+            projectedApps.add(projectedApp);
+        }
+
+        return projectedApps;
+    }
+
+    static class Batch {
+        final InstalledAppsRequest request;
+        final List<Waiter> waiters;
+        boolean started;
+        boolean merged;
+
+        Batch(InstalledAppsRequest request) {
+            this.request = request;
+            this.waiters = new ArrayList<>();
+        }
+    }
+
+    private static class Waiter {
+        final InstalledAppsRequest request;
+        final InstalledAppsCallback callback;
+
+        Waiter(InstalledAppsRequest request, InstalledAppsCallback callback) {
+            this.request = request;
+            this.callback = callback;
+        }
+    }
+
+}
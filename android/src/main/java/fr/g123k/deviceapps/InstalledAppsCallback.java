@@ -7,4 +7,6 @@ public interface InstalledAppsCallback {
 
     void onInstalledAppsListAvailable(List<Map<String, Object>> apps);
 
+    void onInstalledAppsListError(Exception exception);
+
 }
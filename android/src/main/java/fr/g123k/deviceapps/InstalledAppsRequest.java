@@ -0,0 +1,89 @@
+package fr.g123k.deviceapps;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import fr.g123k.deviceapps.utils.IconOptions;
+
+/**
+ * Arguments shared by all the methods listing installed apps
+ */
+class InstalledAppsRequest {
+
+    private static final int DEFAULT_CHUNK_SIZE = 20;
+
+    // How icons are sent
+    static final int ICON_OUTPUT_BASE64 = 0;
+    static final int ICON_OUTPUT_BYTES = 1;
+    // Path of a file in the cache directory
+    static final int ICON_OUTPUT_FILE = 2;
+
+    final boolean includeSystemApps;
+    final boolean onlyAppsWithLaunchIntent;
+    // null if icons are not requested
+    final IconOptions iconOptions;
+    // One of the ICON_OUTPUT_ constants
+    final int iconOutput;
+    // 0 to use as many threads as available cores
+    final int maxParallelism;
+    // Only used when apps are streamed
+    final int chunkSize;
+    // Keys of AppDataConstants to compute (null for all of them)
+    final Set<String> fields;
+    // Filters, sort and pagination (null if not requested)
+    final AppsQuery query;
+    // Apps are sent with the CompactAppsEncoder, instead of a List of Maps
+    final boolean compact;
+
+    InstalledAppsRequest(Map<?, ?> arguments) {
+        if (arguments == null) {
+            arguments = Collections.emptyMap();
+        }
+
+        this.includeSystemApps = getBoolean(arguments, "system_apps");
+        this.onlyAppsWithLaunchIntent = getBoolean(arguments, "only_apps_with_launch_intent");
+        this.iconOptions = getBoolean(arguments, "include_app_icons") ? IconOptions.fromArguments(arguments) : null;
+        this.iconOutput = getIconOutput(arguments, "app_icons_as_bytes", "app_icons_as_files");
+        this.maxParallelism = getInt(arguments, "max_parallelism", 0);
+        this.chunkSize = Math.max(getInt(arguments, "chunk_size", DEFAULT_CHUNK_SIZE), 1);
+        this.fields = getFields(arguments);
+        this.query = AppsQuery.fromArguments(arguments);
+        this.compact = getBoolean(arguments, "compact");
+    }
+
+    static Set<String> getFields(Map<?, ?> arguments) {
+        Object fields = arguments.get("fields");
+
+        if (!(fields instanceof Collection)) {
+            return null;
+        }
+
+        Set<String> set = new HashSet<>();
+        for (Object field : (Collection<?>) fields) {
+            set.add(String.valueOf(field));
+        }
+        return set;
+    }
+
+    static int getIconOutput(Map<?, ?> arguments, String bytesKey, String filesKey) {
+        if (getBoolean(arguments, filesKey)) {
+            return ICON_OUTPUT_FILE;
+        }
+
+        return getBoolean(arguments, bytesKey) ? ICON_OUTPUT_BYTES : ICON_OUTPUT_BASE64;
+    }
+
+    private static boolean getBoolean(Map<?, ?> arguments, String key) {
+        Object value = arguments.get(key);
+        return value instanceof Boolean && (Boolean) value;
+    }
+
+    private static int getInt(Map<?, ?> arguments, String key, int defaultValue) {
+        Object value = arguments.get(key);
+        return value instanceof Number ? ((Number) value).intValue() : defaultValue;
+    }
+
+}
@@ -0,0 +1,110 @@
+package fr.g123k.deviceapps;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.flutter.plugin.common.EventChannel;
+
+/**
+ * Streams the list of installed apps by chunks (of {@link InstalledAppsRequest#chunkSize} apps),
+ * as soon as they are ready. The stream is closed once all apps are sent.
+ * If the listing fails, an error is sent and the stream is closed.
+ * Only one stream can be active at a time: listening again cancels the previous one.
+ */
+class InstalledAppsStreamHandler implements EventChannel.StreamHandler {
+
+    private static final String LOG_TAG = "DEVICE_APPS";
+
+    private final DeviceAppsPlugin plugin;
+    private final AsyncWork asyncWork;
+    private final Handler mainHandler;
+
+    private AtomicBoolean currentStreamCancelled;
+
+    InstalledAppsStreamHandler(DeviceAppsPlugin plugin, AsyncWork asyncWork) {
+        this.plugin = plugin;
+        this.asyncWork = asyncWork;
+        this.mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    @Override
+    public void onListen(Object arguments, final EventChannel.EventSink events) {
+        cancelCurrentStream();
+
+        final InstalledAppsRequest request = new InstalledAppsRequest((Map<?, ?>) arguments);
+        final AtomicBoolean cancelled = new AtomicBoolean(false);
+        currentStreamCancelled = cancelled;
+
+        asyncWork.run(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    List<AppsQuery.Candidate> apps = plugin.filterPackages(plugin.getInstalledPackages(), request);
+
+                    for (int start = 0; start < apps.size() && !cancelled.get(); start += request.chunkSize) {
+                        List<AppsQuery.Candidate> chunk = apps.subList(start, Math.min(start + request.chunkSize, apps.size()));
+                        List<Map<String, Object>> appsData = plugin.buildAppsData(chunk, request);
+
+                        if (!appsData.isEmpty()) {
+                            final Object event = plugin.serializeApps(appsData, request);
+                            post(cancelled, new Runnable() {
+                                @Override
+                                public void run() {
+                                    events.success(event);
+                                }
+                            });
+                        }
+                    }
+
+                    post(cancelled, new Runnable() {
+                        @Override
+                        public void run() {
+                            events.endOfStream();
+                        }
+                    });
+                } catch (final Exception e) {
+                    Log.e(LOG_TAG, "Unable to list the installed apps", e);
+                    post(cancelled, new Runnable() {
+                        @Override
+                        public void run() {
+                            events.error("ERROR", e.getMessage(), null);
+                            events.endOfStream();
+                        }
+                    });
+                    return;
+                }
+
+                plugin.saveCache();
+            }
+        });
+    }
+
+    private void post(final AtomicBoolean cancelled, final Runnable runnable) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!cancelled.get()) {
+                    runnable.run();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void onCancel(Object arguments) {
+        cancelCurrentStream();
+    }
+
+    private void cancelCurrentStream() {
+        if (currentStreamCancelled != null) {
+            currentStreamCancelled.set(true);
+            currentStreamCancelled = null;
+        }
+    }
+
+}
@@ -0,0 +1,205 @@
+package fr.g123k.deviceapps;
+
+import android.content.Context;
+import android.content.pm.ChangedPackages;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.provider.Settings;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import fr.g123k.deviceapps.cache.SyncSnapshot;
+
+/**
+ * Computes the apps added, updated or removed since a sync token was generated.
+ * <p>
+ * On Android 8+, {@link PackageManager#getChangedPackages(int)} gives the list of changed
+ * packages directly (as long as the device didn't reboot). Otherwise, all packages are listed
+ * and compared to the snapshot of the token. In both cases, only changed apps are
+ * serialized.
+ * <p>
+ * Each token has its own snapshot (up to a limit), so that several callers can sync
+ * independently.
+ */
+class InstalledAppsSync {
+
+    private static final String TOKEN_VERSION = "1";
+    private static final String TOKEN_SEPARATOR = ":";
+
+    private final DeviceAppsPlugin plugin;
+    private final SyncSnapshot snapshot;
+
+    InstalledAppsSync(DeviceAppsPlugin plugin, SyncSnapshot snapshot) {
+        this.plugin = plugin;
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * @param token null to get all apps (and a first token)
+     */
+    Map<String, Object> getChangesSince(Context context, String token, InstalledAppsRequest request) {
+        PackageManager packageManager = context.getPackageManager();
+        Token previousToken = Token.parse(token);
+        int bootCount = getBootCount(context);
+
+        Map<String, SyncSnapshot.PackageState> previousPackages = previousToken != null ? snapshot.getPackages(previousToken.snapshotId) : null;
+        boolean reset = previousPackages == null;
+        Map<String, SyncSnapshot.PackageState> packages = reset ? new HashMap<String, SyncSnapshot.PackageState>() : new HashMap<>(previousPackages);
+        List<PackageInfo> added = new ArrayList<>();
+        List<PackageInfo> updated = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        int sequenceNumber = 0;
+
+        if (reset) {
+            // Read before the listing: a package changed in between will be in the next delta
+            sequenceNumber = getSequenceNumber(packageManager);
+
+            for (PackageInfo packageInfo : plugin.getInstalledPackages()) {
+                packages.put(packageInfo.packageName, getState(packageInfo));
+                added.add(packageInfo);
+            }
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && bootCount >= 0 && bootCount == previousToken.bootCount) {
+            ChangedPackages changedPackages = packageManager.getChangedPackages(previousToken.sequenceNumber);
+            sequenceNumber = previousToken.sequenceNumber;
+
+            if (changedPackages != null) {
+                sequenceNumber = changedPackages.getSequenceNumber();
+
+                for (String packageName : changedPackages.getPackageNames()) {
+                    try {
+                        PackageInfo packageInfo = packageManager.getPackageInfo(packageName, 0);
+                        onPackageFound(packageInfo, packages, added, updated);
+                    } catch (PackageManager.NameNotFoundException e) {
+                        if (packages.remove(packageName) != null) {
+                            removed.add(packageName);
+                        }
+                    }
+                }
+            }
+        } else {
+            // Otherwise, the next call would get all the packages changed since the boot
+            sequenceNumber = getSequenceNumber(packageManager);
+
+            List<PackageInfo> installedPackages = plugin.getInstalledPackages();
+            Set<String> installedPackageNames = new HashSet<>(installedPackages.size());
+
+            for (PackageInfo packageInfo : installedPackages) {
+                installedPackageNames.add(packageInfo.packageName);
+                onPackageFound(packageInfo, packages, added, updated);
+            }
+
+            for (String packageName : previousPackages.keySet()) {
+                if (!installedPackageNames.contains(packageName)) {
+                    packages.remove(packageName);
+                    removed.add(packageName);
+                }
+            }
+        }
+
+        // The previous snapshot is kept for the other callers
+        long snapshotId;
+        if (reset || !added.isEmpty() || !updated.isEmpty() || !removed.isEmpty()) {
+            snapshotId = snapshot.add(packages);
+        } else {
+            snapshotId = previousToken.snapshotId;
+        }
+
+        Map<String, Object> changes = new HashMap<>(5);
+        changes.put("token", new Token(snapshotId, bootCount, sequenceNumber).toString());
+        changes.put("reset", reset);
+        changes.put("added", added.isEmpty() ? Collections.emptyList() : plugin.getAppsData(added, request));
+        changes.put("updated", updated.isEmpty() ? Collections.emptyList() : plugin.getAppsData(updated, request));
+        changes.put("removed", removed);
+        return changes;
+    }
+
+    private static void onPackageFound(PackageInfo packageInfo,
+                                       Map<String, SyncSnapshot.PackageState> packages,
+                                       List<PackageInfo> added,
+                                       List<PackageInfo> updated) {
+        SyncSnapshot.PackageState previousState = packages.get(packageInfo.packageName);
+
+        if (previousState == null) {
+            added.add(packageInfo);
+        } else if (previousState.hasChanged(packageInfo.lastUpdateTime, packageInfo.applicationInfo.enabled)) {
+            updated.add(packageInfo);
+        } else {
+            return;
+        }
+
+        packages.put(packageInfo.packageName, getState(packageInfo));
+    }
+
+    private static SyncSnapshot.PackageState getState(PackageInfo packageInfo) {
+        return new SyncSnapshot.PackageState(packageInfo.lastUpdateTime, packageInfo.applicationInfo.enabled);
+    }
+
+    /**
+     * Current sequence number of {@link PackageManager#getChangedPackages(int)}
+     *
+     * @return 0 if not available
+     */
+    private static int getSequenceNumber(PackageManager packageManager) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            ChangedPackages changedPackages = packageManager.getChangedPackages(0);
+            return changedPackages != null ? changedPackages.getSequenceNumber() : 0;
+        }
+        return 0;
+    }
+
+    /**
+     * The sequence number of {@link PackageManager#getChangedPackages(int)} is reset after
+     * each reboot
+     *
+     * @return -1 if not available
+     */
+    private static int getBootCount(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            return Settings.Global.getInt(context.getContentResolver(), Settings.Global.BOOT_COUNT, -1);
+        }
+        return -1;
+    }
+
+    private static class Token {
+        final long snapshotId;
+        final int bootCount;
+        final int sequenceNumber;
+
+        Token(long snapshotId, int bootCount, int sequenceNumber) {
+            this.snapshotId = snapshotId;
+            this.bootCount = bootCount;
+            this.sequenceNumber = sequenceNumber;
+        }
+
+        static Token parse(String token) {
+            if (TextUtils.isEmpty(token)) {
+                return null;
+            }
+
+            String[] parts = token.split(TOKEN_SEPARATOR);
+            if (parts.length != 4 || !TOKEN_VERSION.equals(parts[0])) {
+                return null;
+            }
+
+            try {
+                return new Token(Long.parseLong(parts[1]), Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return TOKEN_VERSION + TOKEN_SEPARATOR + snapshotId + TOKEN_SEPARATOR + bootCount + TOKEN_SEPARATOR + sequenceNumber;
+        }
+    }
+
+}
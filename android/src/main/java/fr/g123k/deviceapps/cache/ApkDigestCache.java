@@ -0,0 +1,258 @@
+package fr.g123k.deviceapps.cache;
+
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import fr.g123k.deviceapps.utils.IOUtils;
+
+/**
+ * SHA-256 digests of the APKs of each package, memoized (in memory and on disk) by package
+ * name and last update time, so that an APK is only hashed again when the app is updated.
+ * <p>
+ * With a single APK, the digest is the SHA-256 of the file. With split APKs, it is the SHA-256
+ * of the concatenated digests of each file (base APK first, then the splits in the order
+ * of {@link ApplicationInfo#splitSourceDirs}).
+ */
+public class ApkDigestCache {
+
+    private static final String LOG_TAG = "DEVICE_APPS";
+
+    private static final String SNAPSHOT_FILE_NAME = "device_apps_digests.bin";
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private static final String ALGORITHM = "SHA-256";
+    // Files are mapped by regions, to limit the address space used (on 32-bit devices)
+    private static final long MAPPED_REGION_SIZE = 32 * 1024 * 1024;
+
+    private final Map<String, Entry> entries;
+    private final File snapshotFile;
+    private volatile boolean dirty;
+
+    public ApkDigestCache(@NonNull File cacheDir) {
+        this.entries = new ConcurrentHashMap<>();
+        this.snapshotFile = new File(cacheDir, SNAPSHOT_FILE_NAME);
+    }
+
+    /**
+     * @return the hexadecimal digest, or null if an APK can't be read
+     */
+    @Nullable
+    public String getDigest(@NonNull PackageInfo packageInfo) {
+        Entry entry = entries.get(packageInfo.packageName);
+        if (entry != null && entry.lastUpdateTime == packageInfo.lastUpdateTime) {
+            return entry.digest;
+        }
+
+        String digest;
+        try {
+            digest = computeDigest(getApkFiles(packageInfo.applicationInfo));
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Unable to compute the digest of " + packageInfo.packageName, e);
+            return null;
+        }
+
+        entries.put(packageInfo.packageName, new Entry(packageInfo.lastUpdateTime, digest));
+        dirty = true;
+        return digest;
+    }
+
+    /**
+     * Total size (in bytes) of the base APK and its splits (cheap: no need to cache it)
+     */
+    public static long getSize(@NonNull ApplicationInfo applicationInfo) {
+        long size = 0;
+        for (File file : getApkFiles(applicationInfo)) {
+            size += file.length();
+        }
+        return size;
+    }
+
+    public void invalidate(@NonNull String packageName) {
+        if (entries.remove(packageName) != null) {
+            dirty = true;
+        }
+    }
+
+    public void clear() {
+        entries.clear();
+        dirty = true;
+    }
+
+    public void loadSnapshot() {
+        if (!snapshotFile.exists()) {
+            return;
+        }
+
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)));
+
+            if (input.readInt() != SNAPSHOT_VERSION) {
+                return;
+            }
+
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                String packageName = input.readUTF();
+                long lastUpdateTime = input.readLong();
+                String digest = input.readUTF();
+
+                if (!entries.containsKey(packageName)) {
+                    entries.put(packageName, new Entry(lastUpdateTime, digest));
+                }
+            }
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Unable to read the digests snapshot", e);
+            entries.clear();
+            //noinspection ResultOfMethodCallIgnored
+            snapshotFile.delete();
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    /**
+     * Writes the digests to the disk (only if they have changed)
+     */
+    public void saveSnapshot() {
+        if (!dirty) {
+            return;
+        }
+
+        dirty = false;
+
+        File tmpFile = new File(snapshotFile.getPath() + ".tmp");
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+
+            Map<String, Entry> entriesCopy = new HashMap<>(entries);
+            output.writeInt(SNAPSHOT_VERSION);
+            output.writeInt(entriesCopy.size());
+
+            for (Map.Entry<String, Entry> item : entriesCopy.entrySet()) {
+                output.writeUTF(item.getKey());
+                output.writeLong(item.getValue().lastUpdateTime);
+                output.writeUTF(item.getValue().digest);
+            }
+
+            output.close();
+            output = null;
+
+            if (!tmpFile.renameTo(snapshotFile)) {
+                throw new IOException("Unable to rename " + tmpFile);
+            }
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Unable to save the digests snapshot", e);
+            dirty = true;
+            //noinspection ResultOfMethodCallIgnored
+            tmpFile.delete();
+        } finally {
+            IOUtils.closeQuietly(output);
+        }
+    }
+
+    private static List<File> getApkFiles(ApplicationInfo applicationInfo) {
+        List<File> files = new ArrayList<>(1);
+        files.add(new File(applicationInfo.sourceDir));
+
+        // Split APKs only exist since Lollipop
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP && applicationInfo.splitSourceDirs != null) {
+            for (String splitSourceDir : applicationInfo.splitSourceDirs) {
+                files.add(new File(splitSourceDir));
+            }
+        }
+
+        return files;
+    }
+
+    private static String computeDigest(List<File> files) throws IOException {
+        if (files.size() == 1) {
+            return toHex(hash(files.get(0)));
+        }
+
+        MessageDigest digest = newMessageDigest();
+        for (File file : files) {
+            digest.update(hash(file));
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * The file is memory-mapped, so its content is never copied into the Java heap
+     */
+    private static byte[] hash(File file) throws IOException {
+        MessageDigest digest = newMessageDigest();
+        FileInputStream input = null;
+
+        try {
+            input = new FileInputStream(file);
+            FileChannel channel = input.getChannel();
+            long size = channel.size();
+
+            for (long position = 0; position < size; position += MAPPED_REGION_SIZE) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPED_REGION_SIZE, size - position));
+                digest.update(buffer);
+            }
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+
+        return digest.digest();
+    }
+
+    private static MessageDigest newMessageDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is available on every Android version
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] hexChars = "0123456789abcdef".toCharArray();
+        char[] chars = new char[bytes.length * 2];
+
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = hexChars[(bytes[i] >> 4) & 0x0F];
+            chars[i * 2 + 1] = hexChars[bytes[i] & 0x0F];
+        }
+
+        return new String(chars);
+    }
+
+    private static class Entry {
+        final long lastUpdateTime;
+        final String digest;
+
+        Entry(long lastUpdateTime, String digest) {
+            this.lastUpdateTime = lastUpdateTime;
+            this.digest = digest;
+        }
+    }
+
+}
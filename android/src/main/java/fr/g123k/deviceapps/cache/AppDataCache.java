@@ -0,0 +1,297 @@
+package fr.g123k.deviceapps.cache;
+
+import android.content.pm.PackageInfo;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import fr.g123k.deviceapps.utils.AppDataConstants;
+import fr.g123k.deviceapps.utils.IOUtils;
+
+/**
+ * In-memory cache of the data returned for each package, backed by a compact snapshot on disk.
+ * An entry is only considered valid while the package's last update time, version code
+ * and enabled state are unchanged. As labels depend on the locale, all entries are dropped
+ * when it changes (including the snapshot of a previous process).
+ */
+public class AppDataCache {
+
+    private static final String LOG_TAG = "DEVICE_APPS";
+
+    private static final String SNAPSHOT_FILE_NAME = "device_apps_snapshot.bin";
+    private static final int SNAPSHOT_VERSION = 2;
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_INT = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_BOOLEAN = 4;
+
+    private final Map<String, Entry> entries;
+    private final File snapshotFile;
+    private volatile boolean dirty;
+    private volatile String locale;
+
+    public AppDataCache(@NonNull File cacheDir) {
+        this.entries = new ConcurrentHashMap<>();
+        this.snapshotFile = new File(cacheDir, SNAPSHOT_FILE_NAME);
+    }
+
+    /**
+     * Returns a copy of the cached data for this package, or null if there is no entry or if
+     * the entry is outdated
+     */
+    @Nullable
+    public Map<String, Object> get(@NonNull PackageInfo packageInfo) {
+        Entry entry = entries.get(packageInfo.packageName);
+
+        if (entry == null) {
+            return null;
+        } else if (!entry.matches(packageInfo)) {
+            entries.remove(packageInfo.packageName);
+            dirty = true;
+            return null;
+        }
+
+        return new HashMap<>(entry.data);
+    }
+
+    /**
+     * Same as {@link #get(PackageInfo)} for a single field, without copying the data
+     */
+    @Nullable
+    public Object getField(@NonNull PackageInfo packageInfo, @NonNull String key) {
+        Entry entry = entries.get(packageInfo.packageName);
+
+        if (entry == null || !entry.matches(packageInfo)) {
+            return null;
+        }
+
+        return entry.data.get(key);
+    }
+
+    public void put(@NonNull PackageInfo packageInfo, @NonNull Map<String, Object> data) {
+        Map<String, Object> copy = new HashMap<>(data);
+        copy.remove(AppDataConstants.APP_ICON);
+
+        entries.put(packageInfo.packageName, new Entry(packageInfo, copy));
+        dirty = true;
+    }
+
+    public void invalidate(@NonNull String packageName) {
+        if (entries.remove(packageName) != null) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Clears the cache if the locale has changed since the previous call
+     */
+    public void setLocale(@NonNull String locale) {
+        String previousLocale = this.locale;
+        this.locale = locale;
+
+        if (previousLocale != null && !previousLocale.equals(locale)) {
+            clear();
+        }
+    }
+
+    public void clear() {
+        entries.clear();
+        dirty = true;
+    }
+
+    /**
+     * Removes the entries of all packages which are not in the given set (eg: uninstalled apps)
+     */
+    public void retainAll(@NonNull Set<String> packageNames) {
+        Iterator<String> iterator = entries.keySet().iterator();
+
+        while (iterator.hasNext()) {
+            if (!packageNames.contains(iterator.next())) {
+                iterator.remove();
+                dirty = true;
+            }
+        }
+    }
+
+    /**
+     * Fills the cache with the snapshot saved on disk by a previous process.
+     * Entries are then validated lazily, when {@link #get(PackageInfo)} is called.
+     */
+    public void loadSnapshot() {
+        if (!snapshotFile.exists()) {
+            return;
+        }
+
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)));
+
+            if (input.readInt() != SNAPSHOT_VERSION) {
+                return;
+            }
+
+            String snapshotLocale = input.readUTF();
+            if (locale != null && !locale.equals(snapshotLocale)) {
+                return;
+            }
+
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                String packageName = input.readUTF();
+                long lastUpdateTime = input.readLong();
+                int versionCode = input.readInt();
+                boolean enabled = input.readBoolean();
+
+                int fieldsCount = input.readShort();
+                Map<String, Object> data = new HashMap<>(fieldsCount);
+                for (int j = 0; j < fieldsCount; j++) {
+                    data.put(input.readUTF(), readValue(input));
+                }
+
+                if (!entries.containsKey(packageName)) {
+                    entries.put(packageName, new Entry(lastUpdateTime, versionCode, enabled, data));
+                }
+            }
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Unable to read the apps snapshot", e);
+            entries.clear();
+            //noinspection ResultOfMethodCallIgnored
+            snapshotFile.delete();
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    /**
+     * Writes the current content of the cache to the disk (only if it has changed)
+     */
+    public void saveSnapshot() {
+        if (!dirty) {
+            return;
+        }
+
+        dirty = false;
+
+        File tmpFile = new File(snapshotFile.getPath() + ".tmp");
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+
+            Map<String, Entry> entriesCopy = new HashMap<>(entries);
+            output.writeInt(SNAPSHOT_VERSION);
+            output.writeUTF(locale != null ? locale : "");
+            output.writeInt(entriesCopy.size());
+
+            for (Map.Entry<String, Entry> item : entriesCopy.entrySet()) {
+                Entry entry = item.getValue();
+
+                output.writeUTF(item.getKey());
+                output.writeLong(entry.lastUpdateTime);
+                output.writeInt(entry.versionCode);
+                output.writeBoolean(entry.enabled);
+
+                output.writeShort(entry.data.size());
+                for (Map.Entry<String, Object> field : entry.data.entrySet()) {
+                    output.writeUTF(field.getKey());
+                    writeValue(output, field.getValue());
+                }
+            }
+
+            output.close();
+            output = null;
+
+            if (!tmpFile.renameTo(snapshotFile)) {
+                throw new IOException("Unable to rename " + tmpFile);
+            }
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Unable to save the apps snapshot", e);
+            dirty = true;
+            //noinspection ResultOfMethodCallIgnored
+            tmpFile.delete();
+        } finally {
+            IOUtils.closeQuietly(output);
+        }
+    }
+
+    private static void writeValue(DataOutputStream output, Object value) throws IOException {
+        if (value instanceof String) {
+            output.writeByte(TYPE_STRING);
+            output.writeUTF((String) value);
+        } else if (value instanceof Integer) {
+            output.writeByte(TYPE_INT);
+            output.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            output.writeByte(TYPE_LONG);
+            output.writeLong((Long) value);
+        } else if (value instanceof Boolean) {
+            output.writeByte(TYPE_BOOLEAN);
+            output.writeBoolean((Boolean) value);
+        } else {
+            output.writeByte(TYPE_NULL);
+        }
+    }
+
+    private static Object readValue(DataInputStream input) throws IOException {
+        byte type = input.readByte();
+
+        switch (type) {
+            case TYPE_STRING:
+                return input.readUTF();
+            case TYPE_INT:
+                return input.readInt();
+            case TYPE_LONG:
+                return input.readLong();
+            case TYPE_BOOLEAN:
+                return input.readBoolean();
+            case TYPE_NULL:
+                return null;
+            default:
+                throw new IOException("Unknown type " + type);
+        }
+    }
+
+    private static class Entry {
+        final long lastUpdateTime;
+        final int versionCode;
+        final boolean enabled;
+        final Map<String, Object> data;
+
+        Entry(PackageInfo packageInfo, Map<String, Object> data) {
+            this(packageInfo.lastUpdateTime,
+                    packageInfo.versionCode,
+                    packageInfo.applicationInfo.enabled,
+                    data);
+        }
+
+        Entry(long lastUpdateTime, int versionCode, boolean enabled, Map<String, Object> data) {
+            this.lastUpdateTime = lastUpdateTime;
+            this.versionCode = versionCode;
+            this.enabled = enabled;
+            this.data = data;
+        }
+
+        boolean matches(PackageInfo packageInfo) {
+            return lastUpdateTime == packageInfo.lastUpdateTime
+                    && versionCode == packageInfo.versionCode
+                    && enabled == packageInfo.applicationInfo.enabled;
+        }
+    }
+
+}
@@ -0,0 +1,264 @@
+package fr.g123k.deviceapps.cache;
+
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import fr.g123k.deviceapps.utils.IOUtils;
+import fr.g123k.deviceapps.utils.IconOptions;
+
+/**
+ * Two-level cache of encoded icons: an in-memory LRU bounded by bytes and a directory
+ * of pre-encoded files on disk (also trimmed by size, least recently used first).
+ * Entries are keyed by package name, last update time and encoding options.
+ */
+public class IconCache {
+
+    private static final String LOG_TAG = "DEVICE_APPS";
+
+    private static final String DIRECTORY_NAME = "device_apps_icons";
+    private static final String FILE_EXTENSION = ".icon";
+    // "-" is not allowed in a package name
+    private static final char KEY_SEPARATOR = '-';
+
+    private static final int DEFAULT_MEMORY_CACHE_SIZE = 4 * 1024 * 1024;
+    private static final long DEFAULT_DISK_CACHE_SIZE = 20 * 1024 * 1024;
+    // Files may have been returned to Flutter, which will read them later
+    private static final long RECENT_FILE_DURATION_MS = 10 * 60 * 1000;
+
+    private final LruCache<String, byte[]> memoryCache;
+    private final File directory;
+    private final long maxDiskSize;
+    private long diskSize = -1;
+
+    public IconCache(@NonNull File cacheDir) {
+        this(cacheDir, DEFAULT_MEMORY_CACHE_SIZE, DEFAULT_DISK_CACHE_SIZE);
+    }
+
+    public IconCache(@NonNull File cacheDir, int maxMemorySize, long maxDiskSize) {
+        this.memoryCache = new LruCache<String, byte[]>(maxMemorySize) {
+            @Override
+            protected int sizeOf(String key, byte[] value) {
+                return value.length;
+            }
+        };
+        this.directory = new File(cacheDir, DIRECTORY_NAME);
+        this.maxDiskSize = maxDiskSize;
+    }
+
+    @Nullable
+    public byte[] get(@NonNull String packageName, long lastUpdateTime, @NonNull IconOptions options) {
+        String key = getKey(packageName, lastUpdateTime, options);
+
+        byte[] icon = memoryCache.get(key);
+        if (icon != null) {
+            return icon;
+        }
+
+        File file = getFile(key);
+        if (!file.exists()) {
+            return null;
+        }
+
+        icon = readFile(file);
+        if (icon != null) {
+            // Used by the disk LRU
+            //noinspection ResultOfMethodCallIgnored
+            file.setLastModified(System.currentTimeMillis());
+            memoryCache.put(key, icon);
+        }
+
+        return icon;
+    }
+
+    public void put(@NonNull String packageName, long lastUpdateTime, @NonNull IconOptions options, @NonNull byte[] icon) {
+        String key = getKey(packageName, lastUpdateTime, options);
+        memoryCache.put(key, icon);
+
+        if (writeFile(getFile(key), icon)) {
+            onFileAdded(icon.length);
+        }
+    }
+
+    /**
+     * Returns the file of the icon without reading it (null if there is none).
+     * Recently returned files are not deleted when the disk cache is trimmed.
+     */
+    @Nullable
+    public File getFile(@NonNull String packageName, long lastUpdateTime, @NonNull IconOptions options) {
+        File file = getFile(getKey(packageName, lastUpdateTime, options));
+        if (!file.exists()) {
+            return null;
+        }
+
+        // Used by the disk LRU
+        //noinspection ResultOfMethodCallIgnored
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    /**
+     * Only writes the icon on disk (it is not kept in memory)
+     *
+     * @return null if the file can't be written
+     */
+    @Nullable
+    public File putFile(@NonNull String packageName, long lastUpdateTime, @NonNull IconOptions options, @NonNull byte[] icon) {
+        File file = getFile(getKey(packageName, lastUpdateTime, options));
+
+        if (!writeFile(file, icon)) {
+            return null;
+        }
+
+        onFileAdded(icon.length);
+        return file;
+    }
+
+    /**
+     * Only removes the icons of this package from the memory, which is cheap enough for the
+     * main thread. As files are keyed by last update time, an outdated file is never returned:
+     * {@link #deleteFiles(String)} can be called later.
+     */
+    public void invalidateMemory(@NonNull String packageName) {
+        String prefix = packageName + KEY_SEPARATOR;
+
+        for (String key : memoryCache.snapshot().keySet()) {
+            if (key.startsWith(prefix)) {
+                memoryCache.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Removes the files of this package from the disk
+     */
+    public void deleteFiles(@NonNull String packageName) {
+        final String prefix = packageName + KEY_SEPARATOR;
+
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(prefix);
+            }
+        });
+
+        deleteFiles(files);
+    }
+
+    public void clear() {
+        memoryCache.evictAll();
+        deleteFiles(directory.listFiles());
+    }
+
+    private synchronized void deleteFiles(File[] files) {
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            long length = file.length();
+            if (file.delete() && diskSize >= 0) {
+                diskSize -= length;
+            }
+        }
+    }
+
+    private synchronized void onFileAdded(long length) {
+        if (diskSize < 0) {
+            diskSize = computeDiskSize();
+        } else {
+            diskSize += length;
+        }
+
+        if (diskSize > maxDiskSize) {
+            trimDisk();
+        }
+    }
+
+    private long computeDiskSize() {
+        long size = 0;
+        File[] files = directory.listFiles();
+
+        if (files != null) {
+            for (File file : files) {
+                size += file.length();
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Deletes the least recently used files until the directory is back to 3/4 of its max size.
+     * Recently used files are kept (even if the directory is still too big).
+     */
+    private void trimDisk() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                long diff = f1.lastModified() - f2.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+
+        long target = maxDiskSize * 3 / 4;
+        long recentFileTime = System.currentTimeMillis() - RECENT_FILE_DURATION_MS;
+        for (File file : files) {
+            if (diskSize <= target || file.lastModified() > recentFileTime) {
+                break;
+            }
+
+            long length = file.length();
+            if (file.delete()) {
+                diskSize -= length;
+            }
+        }
+    }
+
+    private File getFile(String key) {
+        return new File(directory, key + FILE_EXTENSION);
+    }
+
+    private static String getKey(String packageName, long lastUpdateTime, IconOptions options) {
+        return packageName + KEY_SEPARATOR + lastUpdateTime + KEY_SEPARATOR + options.getCacheKey();
+    }
+
+    private static byte[] readFile(File file) {
+        try {
+            return IOUtils.readFile(file);
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Unable to read the icon " + file, e);
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+            return null;
+        }
+    }
+
+    private boolean writeFile(File file, byte[] content) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            return false;
+        }
+
+        try {
+            IOUtils.writeFileAtomically(file, content, 0, content.length);
+            return true;
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Unable to save the icon " + file, e);
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+package fr.g123k.deviceapps.cache;
+
+import android.content.ComponentCallbacks2;
+import android.content.pm.PackageInfo;
+import android.os.Build;
+import android.text.TextUtils;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * In-memory LRU of the app labels, keyed by package name, last update time and locale, so
+ * that the resources of an app are only loaded once per version and per locale.
+ */
+public class LabelCache {
+
+    private static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private final LruCache<String, Entry> entries;
+    private volatile String locale;
+
+    public LabelCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public LabelCache(int maxEntries) {
+        this.entries = new LruCache<>(maxEntries);
+    }
+
+    /**
+     * @return the locale of the labels which are currently loaded, to give to
+     * {@link #get(PackageInfo, String)} and {@link #put(PackageInfo, String, String)}
+     */
+    @Nullable
+    public String getLocale() {
+        return locale;
+    }
+
+    /**
+     * Entries of the previous locale are removed
+     */
+    public void setLocale(@NonNull String locale) {
+        String previousLocale = this.locale;
+        this.locale = locale;
+
+        if (previousLocale != null && !previousLocale.equals(locale)) {
+            entries.evictAll();
+        }
+    }
+
+    @Nullable
+    public String get(@NonNull PackageInfo packageInfo, @Nullable String locale) {
+        Entry entry = entries.get(packageInfo.packageName);
+
+        if (entry == null) {
+            return null;
+        } else if (entry.lastUpdateTime != packageInfo.lastUpdateTime || !TextUtils.equals(entry.locale, locale)) {
+            entries.remove(packageInfo.packageName);
+            return null;
+        }
+
+        return entry.label;
+    }
+
+    /**
+     * @param locale the value of {@link #getLocale()} before the label was loaded
+     */
+    public void put(@NonNull PackageInfo packageInfo, @Nullable String locale, @NonNull String label) {
+        entries.put(packageInfo.packageName, new Entry(packageInfo.lastUpdateTime, locale, label));
+    }
+
+    public void invalidate(@NonNull String packageName) {
+        entries.remove(packageName);
+    }
+
+    public void clear() {
+        entries.evictAll();
+    }
+
+    /**
+     * @param level one of the {@code ComponentCallbacks2.TRIM_MEMORY_} constants
+     */
+    public void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            entries.evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+                entries.trimToSize(entries.maxSize() / 2);
+            } else {
+                entries.evictAll();
+            }
+        }
+    }
+
+    private static class Entry {
+        final long lastUpdateTime;
+        final String locale;
+        final String label;
+
+        Entry(long lastUpdateTime, String locale, String label) {
+            this.lastUpdateTime = lastUpdateTime;
+            this.locale = locale;
+            this.label = label;
+        }
+    }
+
+}
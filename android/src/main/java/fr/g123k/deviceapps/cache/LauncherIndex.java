@@ -0,0 +1,81 @@
+package fr.g123k.deviceapps.cache;
+
+import android.content.Intent;
+import android.content.pm.ActivityInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Launch Intent of every package, obtained with a single query, instead of one
+ * {@link PackageManager#getLaunchIntentForPackage(String)} IPC per package.
+ * Like {@link PackageManager#getLaunchIntentForPackage(String)}, an activity with the
+ * {@link Intent#CATEGORY_INFO} category is preferred to a {@link Intent#CATEGORY_LAUNCHER} one.
+ */
+public class LauncherIndex {
+
+    private volatile Map<String, Intent> launchIntents;
+
+    /**
+     * Queries the launch activities again
+     */
+    @NonNull
+    public Map<String, Intent> refresh(@NonNull PackageManager packageManager) {
+        Map<String, Intent> launchIntents = new HashMap<>();
+        addActivities(packageManager, Intent.CATEGORY_LAUNCHER, launchIntents);
+        addActivities(packageManager, Intent.CATEGORY_INFO, launchIntents);
+
+        this.launchIntents = launchIntents;
+        return launchIntents;
+    }
+
+    /**
+     * @return a new Intent (which can be modified), or null if the package has no launch activity
+     * (or if it was installed since the last refresh)
+     */
+    @Nullable
+    public Intent getLaunchIntent(@NonNull PackageManager packageManager, @NonNull String packageName) {
+        Intent launchIntent = getLaunchIntents(packageManager).get(packageName);
+        return launchIntent != null ? new Intent(launchIntent) : null;
+    }
+
+    public void invalidate() {
+        launchIntents = null;
+    }
+
+    private Map<String, Intent> getLaunchIntents(PackageManager packageManager) {
+        Map<String, Intent> launchIntents = this.launchIntents;
+        return launchIntents != null ? launchIntents : refresh(packageManager);
+    }
+
+    private static void addActivities(PackageManager packageManager, String category, Map<String, Intent> launchIntents) {
+        Intent intent = new Intent(Intent.ACTION_MAIN);
+        intent.addCategory(category);
+
+        List<ResolveInfo> activities = packageManager.queryIntentActivities(intent, 0);
+        // Only the first activity of each package (in the order of resolution) is kept
+        Map<String, Intent> categoryIntents = new HashMap<>();
+
+        for (ResolveInfo resolveInfo : activities) {
+            ActivityInfo activityInfo = resolveInfo.activityInfo;
+            if (activityInfo == null || categoryIntents.containsKey(activityInfo.packageName)) {
+                continue;
+            }
+
+            Intent launchIntent = new Intent(Intent.ACTION_MAIN);
+            launchIntent.addCategory(category);
+            launchIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+            launchIntent.setClassName(activityInfo.packageName, activityInfo.name);
+            categoryIntents.put(activityInfo.packageName, launchIntent);
+        }
+
+        launchIntents.putAll(categoryIntents);
+    }
+
+}
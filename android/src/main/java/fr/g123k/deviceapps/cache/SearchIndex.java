@@ -0,0 +1,215 @@
+package fr.g123k.deviceapps.cache;
+
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+
+import androidx.annotation.NonNull;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory index of the labels and package names of the installed apps.
+ * Labels are normalized once (lower case, without accents) and split into words, so that a
+ * search is a scan of pre-computed strings (well under a millisecond for a few hundred apps).
+ * This scan is linear in the number of apps: a token index would not serve the substring
+ * matches (anywhere in the label or in the package name).
+ * <p>
+ * Packages which have changed are only marked as dirty and must be refreshed by the caller
+ * (with {@link #getDirtyPackages()}) before the next search.
+ */
+public class SearchIndex {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+    private static final Pattern WORDS_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // Match quality (the lowest is the best)
+    private static final int MATCH_EXACT = 0;
+    private static final int MATCH_LABEL_PREFIX = 1;
+    private static final int MATCH_WORD_PREFIX = 2;
+    private static final int MATCH_LABEL = 3;
+    private static final int MATCH_PACKAGE_NAME = 4;
+    private static final int MATCH_WORDS = 5;
+    private static final int NO_MATCH = Integer.MAX_VALUE;
+
+    private final Map<String, Entry> entries;
+    private final Set<String> dirtyPackages;
+    private volatile boolean built;
+
+    public SearchIndex() {
+        this.entries = new ConcurrentHashMap<>();
+        this.dirtyPackages = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    }
+
+    /**
+     * Whether {@link #setBuilt()} was called since the last {@link #clear()}
+     */
+    public boolean isBuilt() {
+        return built;
+    }
+
+    public void setBuilt() {
+        built = true;
+    }
+
+    public void put(@NonNull PackageInfo packageInfo, @NonNull String label) {
+        entries.put(packageInfo.packageName, new Entry(packageInfo, label));
+    }
+
+    public void remove(@NonNull String packageName) {
+        entries.remove(packageName);
+    }
+
+    /**
+     * The package will be refreshed before the next search
+     */
+    public void markDirty(@NonNull String packageName) {
+        dirtyPackages.add(packageName);
+    }
+
+    /**
+     * Returns and forgets the packages marked as dirty
+     */
+    @NonNull
+    public List<String> getDirtyPackages() {
+        List<String> packageNames = new ArrayList<>(dirtyPackages);
+        dirtyPackages.removeAll(packageNames);
+        return packageNames;
+    }
+
+    public void clear() {
+        built = false;
+        entries.clear();
+        dirtyPackages.clear();
+    }
+
+    /**
+     * Apps whose label or package name matches the query, the best matches first
+     *
+     * @param limit 0 or less for no limit
+     */
+    @NonNull
+    public List<PackageInfo> search(@NonNull String query, int limit, boolean includeSystemApps) {
+        String normalizedQuery = normalize(query).trim();
+        if (normalizedQuery.isEmpty()) {
+            return new ArrayList<>(0);
+        }
+
+        String[] queryWords = WORDS_SEPARATOR.split(normalizedQuery);
+
+        final List<Match> matches = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (!includeSystemApps && entry.systemApp) {
+                continue;
+            }
+
+            int quality = entry.match(normalizedQuery, queryWords);
+            if (quality != NO_MATCH) {
+                matches.add(new Match(entry, quality));
+            }
+        }
+
+        Collections.sort(matches, new Comparator<Match>() {
+            @Override
+            public int compare(Match m1, Match m2) {
+                if (m1.quality != m2.quality) {
+                    return m1.quality < m2.quality ? -1 : 1;
+                }
+                return m1.entry.normalizedLabel.compareTo(m2.entry.normalizedLabel);
+            }
+        });
+
+        int count = limit > 0 ? Math.min(limit, matches.size()) : matches.size();
+        List<PackageInfo> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            results.add(matches.get(i).entry.packageInfo);
+        }
+
+        return results;
+    }
+
+    /**
+     * Lower case and without accents (diacritics)
+     */
+    static String normalize(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    private static class Entry {
+        final PackageInfo packageInfo;
+        final boolean systemApp;
+        final String normalizedLabel;
+        final String normalizedPackageName;
+        final String[] words;
+
+        Entry(PackageInfo packageInfo, String label) {
+            this.packageInfo = packageInfo;
+            this.systemApp = packageInfo.applicationInfo != null
+                    && (packageInfo.applicationInfo.flags & (ApplicationInfo.FLAG_SYSTEM | ApplicationInfo.FLAG_UPDATED_SYSTEM_APP)) != 0;
+            this.normalizedLabel = normalize(label).trim();
+            this.normalizedPackageName = packageInfo.packageName.toLowerCase(Locale.ROOT);
+            this.words = WORDS_SEPARATOR.split(normalizedLabel);
+        }
+
+        int match(String query, String[] queryWords) {
+            if (normalizedLabel.equals(query)) {
+                return MATCH_EXACT;
+            } else if (normalizedLabel.startsWith(query)) {
+                return MATCH_LABEL_PREFIX;
+            }
+
+            for (String word : words) {
+                if (word.startsWith(query)) {
+                    return MATCH_WORD_PREFIX;
+                }
+            }
+
+            if (normalizedLabel.contains(query)) {
+                return MATCH_LABEL;
+            } else if (normalizedPackageName.contains(query)) {
+                return MATCH_PACKAGE_NAME;
+            }
+
+            // Each word of the query is the beginning of a word of the label (in any order)
+            if (queryWords.length > 1) {
+                for (String queryWord : queryWords) {
+                    if (!hasWordStartingWith(queryWord)) {
+                        return NO_MATCH;
+                    }
+                }
+                return MATCH_WORDS;
+            }
+
+            return NO_MATCH;
+        }
+
+        private boolean hasWordStartingWith(String prefix) {
+            for (String word : words) {
+                if (word.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class Match {
+        final Entry entry;
+        final int quality;
+
+        Match(Entry entry, int quality) {
+            this.entry = entry;
+            this.quality = quality;
+        }
+    }
+
+}
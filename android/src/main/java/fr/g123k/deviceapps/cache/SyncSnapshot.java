@@ -0,0 +1,175 @@
+package fr.g123k.deviceapps.cache;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import fr.g123k.deviceapps.utils.IOUtils;
+
+/**
+ * State of the installed packages (last update time and enabled state) when each sync token
+ * was generated. The id of a snapshot is part of its token.
+ * <p>
+ * Several callers (eg: the engines of the process) may sync with their own token: the
+ * {@link #MAX_SNAPSHOTS} most recently used snapshots are kept (in memory and on disk), so
+ * that a sync does not invalidate the token of the other callers.
+ */
+public class SyncSnapshot {
+
+    private static final String LOG_TAG = "DEVICE_APPS";
+
+    private static final String FILE_NAME = "device_apps_sync.bin";
+    private static final int FILE_VERSION = 2;
+    private static final int MAX_SNAPSHOTS = 8;
+
+    private final File file;
+
+    private boolean loaded;
+    private long lastId;
+    // Access order: the least recently used snapshot is the first one
+    private final LinkedHashMap<Long, Map<String, PackageState>> snapshots;
+
+    public SyncSnapshot(@NonNull File filesDir) {
+        this.file = new File(filesDir, FILE_NAME);
+        this.snapshots = new LinkedHashMap<>(MAX_SNAPSHOTS + 1, 0.75f, true);
+    }
+
+    /**
+     * @return null if there is no snapshot with this id (eg: it was evicted)
+     */
+    @Nullable
+    public synchronized Map<String, PackageState> getPackages(long id) {
+        ensureLoaded();
+        return snapshots.get(id);
+    }
+
+    /**
+     * Adds a new snapshot (the least recently used one may be removed) and returns its id
+     */
+    public synchronized long add(@NonNull Map<String, PackageState> packages) {
+        ensureLoaded();
+
+        lastId = Math.max(System.currentTimeMillis(), lastId + 1);
+        snapshots.put(lastId, packages);
+
+        Iterator<Long> iterator = snapshots.keySet().iterator();
+        while (snapshots.size() > MAX_SNAPSHOTS) {
+            iterator.next();
+            iterator.remove();
+        }
+
+        save();
+        return lastId;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+
+        loaded = true;
+        if (!file.exists()) {
+            return;
+        }
+
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+            if (input.readInt() != FILE_VERSION) {
+                return;
+            }
+
+            long fileLastId = input.readLong();
+            int snapshotsCount = input.readInt();
+            Map<Long, Map<String, PackageState>> fileSnapshots = new LinkedHashMap<>(snapshotsCount);
+
+            for (int i = 0; i < snapshotsCount; i++) {
+                long snapshotId = input.readLong();
+                int count = input.readInt();
+                Map<String, PackageState> snapshotPackages = new HashMap<>(count);
+
+                for (int j = 0; j < count; j++) {
+                    String packageName = input.readUTF();
+                    snapshotPackages.put(packageName, new PackageState(input.readLong(), input.readBoolean()));
+                }
+
+                fileSnapshots.put(snapshotId, snapshotPackages);
+            }
+
+            this.lastId = fileLastId;
+            this.snapshots.putAll(fileSnapshots);
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Unable to read the sync snapshots", e);
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    /**
+     * The snapshots are written from the least to the most recently used
+     */
+    private void save() {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            output.writeInt(FILE_VERSION);
+            output.writeLong(lastId);
+            output.writeInt(snapshots.size());
+
+            for (Map.Entry<Long, Map<String, PackageState>> snapshot : snapshots.entrySet()) {
+                output.writeLong(snapshot.getKey());
+                output.writeInt(snapshot.getValue().size());
+
+                for (Map.Entry<String, PackageState> entry : snapshot.getValue().entrySet()) {
+                    output.writeUTF(entry.getKey());
+                    output.writeLong(entry.getValue().lastUpdateTime);
+                    output.writeBoolean(entry.getValue().enabled);
+                }
+            }
+
+            output.close();
+            output = null;
+
+            if (!tmpFile.renameTo(file)) {
+                throw new IOException("Unable to rename " + tmpFile);
+            }
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Unable to save the sync snapshots", e);
+            //noinspection ResultOfMethodCallIgnored
+            tmpFile.delete();
+        } finally {
+            IOUtils.closeQuietly(output);
+        }
+    }
+
+    public static class PackageState {
+        public final long lastUpdateTime;
+        public final boolean enabled;
+
+        public PackageState(long lastUpdateTime, boolean enabled) {
+            this.lastUpdateTime = lastUpdateTime;
+            this.enabled = enabled;
+        }
+
+        public boolean hasChanged(long lastUpdateTime, boolean enabled) {
+            return this.lastUpdateTime != lastUpdateTime || this.enabled != enabled;
+        }
+    }
+
+}
@@ -1,109 +1,181 @@
 package fr.g123k.deviceapps.listener;
 
-import android.content.BroadcastReceiver;
 import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
+import android.os.Handler;
+import android.os.Looper;
 
 import androidx.annotation.NonNull;
 
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
 
+import fr.g123k.deviceapps.utils.AppDataEventConstants;
 import io.flutter.plugin.common.EventChannel;
 
 public class DeviceAppsChangedListener {
 
     private final DeviceAppsChangedListenerInterface callback;
     private final Set<EventChannel.EventSink> sinks;
+    // Sinks receiving a list of events every X milliseconds
+    private final Map<EventChannel.EventSink, EventsBatch> batchedSinks;
+    private final PackagesReceiver receiver;
+    private final Handler handler;
 
-    private BroadcastReceiver appsBroadcastReceiver;
-
-    public DeviceAppsChangedListener(DeviceAppsChangedListenerInterface callback) {
+    public DeviceAppsChangedListener(DeviceAppsChangedListenerInterface callback, PackagesReceiver receiver) {
         this.callback = callback;
-        this.sinks = new HashSet<>(1);
+        this.sinks = new CopyOnWriteArraySet<>();
+        this.batchedSinks = new ConcurrentHashMap<>(1);
+        this.receiver = receiver;
+        this.handler = new Handler(Looper.getMainLooper());
     }
 
     public void register(@NonNull Context context, EventChannel.EventSink events) {
-        if (appsBroadcastReceiver == null) {
-            createBroadcastReceiver();
-        }
-
-        IntentFilter intentFilter = new IntentFilter();
-        intentFilter.addAction(Intent.ACTION_PACKAGE_ADDED);
-        intentFilter.addAction(Intent.ACTION_PACKAGE_REPLACED);
-        intentFilter.addAction(Intent.ACTION_PACKAGE_CHANGED);
-        intentFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
-        intentFilter.addDataScheme("package");
-
         sinks.add(events);
-
-        context.registerReceiver(appsBroadcastReceiver, intentFilter);
+        receiver.addListener(context, this);
     }
 
-    private void createBroadcastReceiver() {
-        appsBroadcastReceiver = new BroadcastReceiver() {
-            @Override
-            public void onReceive(Context context, Intent intent) {
-                String packageName = intent.getDataString().replace("package:", "");
-
-                boolean replacing = intent.getExtras().getBoolean(Intent.EXTRA_REPLACING, false);
-
-                switch (intent.getAction()) {
-                    case Intent.ACTION_PACKAGE_ADDED:
-                        if (!replacing) {
-                            onPackageInstalled(packageName);
-                        }
-                        break;
-                    case Intent.ACTION_PACKAGE_REPLACED:
-                        onPackageUpdated(packageName);
-                        break;
-                    case Intent.ACTION_PACKAGE_CHANGED:
-                        String[] components = intent.getExtras().getStringArray(Intent.EXTRA_CHANGED_COMPONENT_NAME_LIST);
-                        if (components.length == 1 && components[0].equalsIgnoreCase(packageName)) {
-                            onPackageChanged(packageName);
-                        }
-                        break;
-                    case Intent.ACTION_PACKAGE_REMOVED:
-                        if (!replacing) {
-                            onPackageUninstalled(packageName);
-                        }
-                        break;
-                }
-            }
-        };
+    /**
+     * Events will be coalesced by package during {@code windowMs} milliseconds, then sent as
+     * a single list
+     */
+    public void registerBatched(@NonNull Context context, EventChannel.EventSink events, long windowMs) {
+        batchedSinks.put(events, new EventsBatch(events, windowMs));
+        receiver.addListener(context, this);
     }
 
     void onPackageInstalled(String packageName) {
-        for (EventChannel.EventSink sink : sinks) {
-            callback.onPackageInstalled(packageName, sink);
+        if (!sinks.isEmpty()) {
+            publish(callback.onPackageInstalled(packageName));
         }
+
+        addToBatches(packageName, AppDataEventConstants.EVENT_TYPE_INSTALLED);
     }
 
     void onPackageUpdated(String packageName) {
-        for (EventChannel.EventSink sink : sinks) {
-            callback.onPackageUpdated(packageName, sink);
+        if (!sinks.isEmpty()) {
+            publish(callback.onPackageUpdated(packageName));
         }
+
+        addToBatches(packageName, AppDataEventConstants.EVENT_TYPE_UPDATED);
     }
 
     void onPackageUninstalled(String packageName) {
-        for (EventChannel.EventSink sink : sinks) {
-            callback.onPackageUninstalled(packageName, sink);
+        if (!sinks.isEmpty()) {
+            publish(callback.onPackageUninstalled(packageName));
         }
+
+        addToBatches(packageName, AppDataEventConstants.EVENT_TYPE_UNINSTALLED);
     }
 
     void onPackageChanged(String packageName) {
+        if (!sinks.isEmpty()) {
+            publish(callback.onPackageChanged(packageName));
+        }
+
+        addToBatches(packageName, AppDataEventConstants.EVENT_TYPE_CHANGED);
+    }
+
+    /**
+     * The same payload is sent to every sink
+     */
+    private void publish(Map<String, Object> payload) {
         for (EventChannel.EventSink sink : sinks) {
-            callback.onPackageChanged(packageName, sink);
+            sink.success(payload);
+        }
+    }
+
+    private void addToBatches(String packageName, String eventType) {
+        for (EventsBatch batch : batchedSinks.values()) {
+            batch.add(packageName, eventType);
+        }
+    }
+
+    public void unregister(@NonNull Context context, EventChannel.EventSink events) {
+        sinks.remove(events);
+
+        EventsBatch batch = batchedSinks.remove(events);
+        if (batch != null) {
+            batch.cancel();
+        }
+
+        unregisterReceiverIfUnused(context);
+    }
+
+    private void unregisterReceiverIfUnused(@NonNull Context context) {
+        if (sinks.isEmpty() && batchedSinks.isEmpty()) {
+            receiver.removeListener(context, this);
         }
     }
 
     public void unregister(@NonNull Context context) {
-        if (appsBroadcastReceiver != null) {
-            context.unregisterReceiver(appsBroadcastReceiver);
+        receiver.removeListener(context, this);
+
+        for (EventsBatch batch : batchedSinks.values()) {
+            batch.cancel();
         }
 
         sinks.clear();
+        batchedSinks.clear();
+    }
+
+    /**
+     * Keeps the last event of each package until the end of the window
+     */
+    private class EventsBatch implements Runnable {
+
+        private final EventChannel.EventSink sink;
+        private final long windowMs;
+        private final LinkedHashMap<String, String> pendingEvents;
+
+        EventsBatch(EventChannel.EventSink sink, long windowMs) {
+            this.sink = sink;
+            this.windowMs = windowMs;
+            this.pendingEvents = new LinkedHashMap<>();
+        }
+
+        void add(String packageName, String eventType) {
+            boolean scheduled = !pendingEvents.isEmpty();
+            String previousEventType = pendingEvents.remove(packageName);
+
+            if (AppDataEventConstants.EVENT_TYPE_INSTALLED.equals(previousEventType)) {
+                if (AppDataEventConstants.EVENT_TYPE_UNINSTALLED.equals(eventType)) {
+                    // Installed, then uninstalled during the same window = nothing to send
+                    eventType = null;
+                } else {
+                    eventType = AppDataEventConstants.EVENT_TYPE_INSTALLED;
+                }
+            }
+
+            if (eventType != null) {
+                pendingEvents.put(packageName, eventType);
+            }
+
+            if (!scheduled && !pendingEvents.isEmpty()) {
+                handler.postDelayed(this, windowMs);
+            } else if (scheduled && pendingEvents.isEmpty()) {
+                handler.removeCallbacks(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (pendingEvents.isEmpty()) {
+                return;
+            }
+
+            Map<String, String> events = new LinkedHashMap<>(pendingEvents);
+            pendingEvents.clear();
+
+            callback.onPackagesChanged(events, sink);
+        }
+
+        void cancel() {
+            handler.removeCallbacks(this);
+            pendingEvents.clear();
+        }
     }
 
 }
@@ -1,15 +1,29 @@
 package fr.g123k.deviceapps.listener;
 
+import java.util.Map;
+
 import io.flutter.plugin.common.EventChannel;
 
+/**
+ * Each method is called once per event (whatever the number of sinks) and returns the
+ * payload which will be sent to all of them
+ */
 public interface DeviceAppsChangedListenerInterface {
 
-    void onPackageInstalled(String packageName, EventChannel.EventSink events);
+    Map<String, Object> onPackageInstalled(String packageName);
+
+    Map<String, Object> onPackageUpdated(String packageName);
 
-    void onPackageUpdated(String packageName, EventChannel.EventSink events);
+    Map<String, Object> onPackageUninstalled(String packageName);
 
-    void onPackageUninstalled(String packageName, EventChannel.EventSink events);
+    Map<String, Object> onPackageChanged(String packageName);
 
-    void onPackageChanged(String packageName, EventChannel.EventSink events);
+    /**
+     * Events coalesced during a window
+     *
+     * @param events key = package name, value = type of event (one of the
+     *               {@link fr.g123k.deviceapps.utils.AppDataEventConstants} types)
+     */
+    void onPackagesChanged(Map<String, String> events, EventChannel.EventSink sink);
 
 }
@@ -0,0 +1,11 @@
+package fr.g123k.deviceapps.listener;
+
+/**
+ * Notified of every change (installation, update, uninstallation, etc.) of a package, whether
+ * or not events are listened to on the Flutter side
+ */
+public interface PackagesObserver {
+
+    void onPackageChanged(String packageName);
+
+}
@@ -0,0 +1,141 @@
+package fr.g123k.deviceapps.listener;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+
+import androidx.annotation.NonNull;
+
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Single {@link BroadcastReceiver} of the process, shared by the
+ * {@link DeviceAppsChangedListener} of every engine.
+ * It is only registered while a listener or an observer needs it.
+ */
+public class PackagesReceiver {
+
+    private final Set<DeviceAppsChangedListener> listeners;
+    private final Set<PackagesObserver> observers;
+
+    private BroadcastReceiver appsBroadcastReceiver;
+    private boolean receiverRegistered;
+
+    public PackagesReceiver() {
+        this.listeners = new CopyOnWriteArraySet<>();
+        this.observers = new CopyOnWriteArraySet<>();
+    }
+
+    synchronized void addListener(@NonNull Context context, @NonNull DeviceAppsChangedListener listener) {
+        listeners.add(listener);
+        registerReceiver(context);
+    }
+
+    synchronized void removeListener(@NonNull Context context, @NonNull DeviceAppsChangedListener listener) {
+        listeners.remove(listener);
+        unregisterReceiverIfUnused(context);
+    }
+
+    /**
+     * Keeps the receiver registered, even if there is no listener
+     */
+    public synchronized void addObserver(@NonNull Context context, @NonNull PackagesObserver observer) {
+        observers.add(observer);
+        registerReceiver(context);
+    }
+
+    public synchronized void unregister(@NonNull Context context) {
+        unregisterReceiver(context);
+
+        listeners.clear();
+        observers.clear();
+    }
+
+    private void registerReceiver(@NonNull Context context) {
+        if (receiverRegistered) {
+            return;
+        }
+
+        if (appsBroadcastReceiver == null) {
+            createBroadcastReceiver();
+        }
+
+        IntentFilter intentFilter = new IntentFilter();
+        intentFilter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        intentFilter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        intentFilter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        intentFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        intentFilter.addDataScheme("package");
+
+        context.registerReceiver(appsBroadcastReceiver, intentFilter);
+        receiverRegistered = true;
+    }
+
+    private void unregisterReceiverIfUnused(@NonNull Context context) {
+        if (listeners.isEmpty() && observers.isEmpty()) {
+            unregisterReceiver(context);
+        }
+    }
+
+    private void unregisterReceiver(@NonNull Context context) {
+        if (appsBroadcastReceiver != null && receiverRegistered) {
+            context.unregisterReceiver(appsBroadcastReceiver);
+        }
+
+        receiverRegistered = false;
+    }
+
+    private void createBroadcastReceiver() {
+        appsBroadcastReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                String packageName = intent.getDataString().replace("package:", "");
+
+                boolean replacing = intent.getExtras().getBoolean(Intent.EXTRA_REPLACING, false);
+
+                switch (intent.getAction()) {
+                    case Intent.ACTION_PACKAGE_ADDED:
+                        if (!replacing) {
+                            notifyObservers(packageName);
+                            for (DeviceAppsChangedListener listener : listeners) {
+                                listener.onPackageInstalled(packageName);
+                            }
+                        }
+                        break;
+                    case Intent.ACTION_PACKAGE_REPLACED:
+                        notifyObservers(packageName);
+                        for (DeviceAppsChangedListener listener : listeners) {
+                            listener.onPackageUpdated(packageName);
+                        }
+                        break;
+                    case Intent.ACTION_PACKAGE_CHANGED:
+                        String[] components = intent.getExtras().getStringArray(Intent.EXTRA_CHANGED_COMPONENT_NAME_LIST);
+                        if (components.length == 1 && components[0].equalsIgnoreCase(packageName)) {
+                            notifyObservers(packageName);
+                            for (DeviceAppsChangedListener listener : listeners) {
+                                listener.onPackageChanged(packageName);
+                            }
+                        }
+                        break;
+                    case Intent.ACTION_PACKAGE_REMOVED:
+                        if (!replacing) {
+                            notifyObservers(packageName);
+                            for (DeviceAppsChangedListener listener : listeners) {
+                                listener.onPackageUninstalled(packageName);
+                            }
+                        }
+                        break;
+                }
+            }
+        };
+    }
+
+    private void notifyObservers(String packageName) {
+        for (PackagesObserver observer : observers) {
+            observer.onPackageChanged(packageName);
+        }
+    }
+
+}
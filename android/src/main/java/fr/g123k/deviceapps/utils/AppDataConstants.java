@@ -14,5 +14,10 @@ public class AppDataConstants {
     public static final String IS_ENABLED = "is_enabled";
     public static final String CATEGORY = "category";
     public static final String APP_ICON = "app_icon";
+    // Path of the icon, instead of its content
+    public static final String APP_ICON_FILE = "app_icon_file";
+    // Only computed if explicitly requested
+    public static final String APK_DIGEST = "apk_digest";
+    public static final String APK_SIZE = "apk_size";
 
 }
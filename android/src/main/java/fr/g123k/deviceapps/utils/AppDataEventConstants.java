@@ -10,5 +10,7 @@ public class AppDataEventConstants {
     public static final String EVENT_TYPE_UNINSTALLED = "uninstalled";
     public static final String EVENT_TYPE_ENABLED = "enabled";
     public static final String EVENT_TYPE_DISABLED = "disabled";
+    // Only used internally: will be converted to enabled or disabled
+    public static final String EVENT_TYPE_CHANGED = "changed";
 
 }
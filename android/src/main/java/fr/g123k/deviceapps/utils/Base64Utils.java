@@ -7,10 +7,47 @@ import java.io.ByteArrayOutputStream;
 
 public class Base64Utils {
 
-    public static String encodeToBase64(Bitmap image, Bitmap.CompressFormat compressFormat, int quality) {
-        ByteArrayOutputStream byteArrayOS = new ByteArrayOutputStream();
+    // Buffers bigger than this won't be kept between two calls
+    private static final int MAX_REUSED_BUFFER_SIZE = 512 * 1024;
+
+    private static final ThreadLocal<ReusableByteArrayOutputStream> BUFFERS = new ThreadLocal<ReusableByteArrayOutputStream>() {
+        @Override
+        protected ReusableByteArrayOutputStream initialValue() {
+            return new ReusableByteArrayOutputStream();
+        }
+    };
+
+    public static String encodeToBase64(byte[] content) {
+        return Base64.encodeToString(content, Base64.NO_WRAP);
+    }
+
+    /**
+     * Compresses the image into a buffer reused by the current thread, so that the only
+     * allocation is the returned array
+     */
+    public static byte[] compress(Bitmap image, Bitmap.CompressFormat compressFormat, int quality) {
+        ReusableByteArrayOutputStream byteArrayOS = BUFFERS.get();
+        byteArrayOS.reset();
+
         image.compress(compressFormat, quality, byteArrayOS);
-        return Base64.encodeToString(byteArrayOS.toByteArray(), Base64.NO_WRAP);
+        byte[] content = byteArrayOS.toByteArray();
+
+        if (byteArrayOS.capacity() > MAX_REUSED_BUFFER_SIZE) {
+            BUFFERS.remove();
+        }
+
+        return content;
+    }
+
+    private static class ReusableByteArrayOutputStream extends ByteArrayOutputStream {
+
+        ReusableByteArrayOutputStream() {
+            super(32 * 1024);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
     }
 
 }
@@ -0,0 +1,208 @@
+package fr.g123k.deviceapps.utils;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar encoding of a list of apps, sent as a single byte[] instead of one Map per app
+ * (where every key is encoded again).
+ * Must be kept in sync with lib/src/compact_apps_decoder.dart
+ * <p>
+ * All numbers are big-endian:
+ * <pre>
+ * int32 version, int32 apps count
+ * int32 strings count, then for each string: int32 length + UTF-8 bytes
+ * int32 fields count, then for each field:
+ *   int32 key (index in the strings), int8 type
+ *   one flag per app (0 = absent, 1 = present, 2 = true for booleans, 3 = null)
+ *   the values of the apps with a flag of 1 (strings are indexes in the strings)
+ * </pre>
+ */
+public class CompactAppsEncoder {
+
+    private static final int FORMAT_VERSION = 1;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_INT = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_BOOLEAN = 4;
+    private static final byte TYPE_BYTES = 5;
+
+    private static final byte FLAG_ABSENT = 0;
+    private static final byte FLAG_PRESENT = 1;
+    private static final byte FLAG_TRUE = 2;
+    private static final byte FLAG_NULL = 3;
+
+    private CompactAppsEncoder() {
+    }
+
+    @NonNull
+    public static byte[] encode(@NonNull List<Map<String, Object>> apps) {
+        // Type of each field (in the order of appearance)
+        Map<String, Byte> fields = new LinkedHashMap<>();
+        StringTable strings = new StringTable();
+
+        for (Map<String, Object> app : apps) {
+            for (Map.Entry<String, Object> field : app.entrySet()) {
+                byte type = getType(field.getKey(), field.getValue());
+                Byte fieldType = fields.get(field.getKey());
+
+                if (fieldType == null || fieldType == TYPE_NULL) {
+                    fields.put(field.getKey(), type);
+                } else if (type != TYPE_NULL && type != fieldType) {
+                    throw new IllegalArgumentException("Field \"" + field.getKey() + "\" has different types");
+                }
+
+                if (type == TYPE_STRING) {
+                    strings.add((String) field.getValue());
+                }
+            }
+        }
+
+        for (String key : fields.keySet()) {
+            strings.add(key);
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[computeSize(apps, fields, strings)]);
+        buffer.putInt(FORMAT_VERSION);
+        buffer.putInt(apps.size());
+
+        buffer.putInt(strings.values.size());
+        for (byte[] string : strings.values) {
+            buffer.putInt(string.length);
+            buffer.put(string);
+        }
+
+        buffer.putInt(fields.size());
+        for (Map.Entry<String, Byte> field : fields.entrySet()) {
+            String key = field.getKey();
+            byte type = field.getValue();
+
+            buffer.putInt(strings.indexOf(key));
+            buffer.put(type);
+
+            for (Map<String, Object> app : apps) {
+                Object value = app.get(key);
+                if (value == null) {
+                    buffer.put(app.containsKey(key) ? FLAG_NULL : FLAG_ABSENT);
+                } else if (type == TYPE_BOOLEAN && (Boolean) value) {
+                    buffer.put(FLAG_TRUE);
+                } else {
+                    buffer.put(FLAG_PRESENT);
+                }
+            }
+
+            if (type == TYPE_NULL || type == TYPE_BOOLEAN) {
+                continue;
+            }
+
+            for (Map<String, Object> app : apps) {
+                Object value = app.get(key);
+                if (value == null) {
+                    continue;
+                }
+
+                switch (type) {
+                    case TYPE_STRING:
+                        buffer.putInt(strings.indexOf((String) value));
+                        break;
+                    case TYPE_INT:
+                        buffer.putInt((Integer) value);
+                        break;
+                    case TYPE_LONG:
+                        buffer.putLong((Long) value);
+                        break;
+                    case TYPE_BYTES:
+                        byte[] bytes = (byte[]) value;
+                        buffer.putInt(bytes.length);
+                        buffer.put(bytes);
+                        break;
+                }
+            }
+        }
+
+        return buffer.array();
+    }
+
+    private static int computeSize(List<Map<String, Object>> apps, Map<String, Byte> fields, StringTable strings) {
+        int size = 3 * 4;
+
+        for (byte[] string : strings.values) {
+            size += 4 + string.length;
+        }
+
+        size += 4;
+        for (Map.Entry<String, Byte> field : fields.entrySet()) {
+            size += 4 + 1 + apps.size();
+
+            for (Map<String, Object> app : apps) {
+                Object value = app.get(field.getKey());
+                if (value == null) {
+                    continue;
+                }
+
+                switch (field.getValue()) {
+                    case TYPE_STRING:
+                    case TYPE_INT:
+                        size += 4;
+                        break;
+                    case TYPE_LONG:
+                        size += 8;
+                        break;
+                    case TYPE_BYTES:
+                        size += 4 + ((byte[]) value).length;
+                        break;
+                }
+            }
+        }
+
+        return size;
+    }
+
+    private static byte getType(String key, Object value) {
+        if (value == null) {
+            return TYPE_NULL;
+        } else if (value instanceof String) {
+            return TYPE_STRING;
+        } else if (value instanceof Integer) {
+            return TYPE_INT;
+        } else if (value instanceof Long) {
+            return TYPE_LONG;
+        } else if (value instanceof Boolean) {
+            return TYPE_BOOLEAN;
+        } else if (value instanceof byte[]) {
+            return TYPE_BYTES;
+        }
+
+        throw new IllegalArgumentException("Unsupported type for field \"" + key + "\": " + value.getClass());
+    }
+
+    /**
+     * Each distinct string (keys and values) is only sent once
+     */
+    private static class StringTable {
+        final Map<String, Integer> indexes = new HashMap<>();
+        final List<byte[]> values = new ArrayList<>();
+
+        void add(String string) {
+            if (!indexes.containsKey(string)) {
+                indexes.put(string, values.size());
+                values.add(string.getBytes(UTF_8));
+            }
+        }
+
+        int indexOf(String string) {
+            return indexes.get(string);
+        }
+    }
+
+}
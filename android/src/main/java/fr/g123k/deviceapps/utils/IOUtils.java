@@ -0,0 +1,66 @@
+package fr.g123k.deviceapps.utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+public class IOUtils {
+
+    public static byte[] readFile(File file) throws IOException {
+        FileInputStream input = null;
+        try {
+            input = new FileInputStream(file);
+
+            byte[] content = new byte[(int) file.length()];
+            int offset = 0;
+            while (offset < content.length) {
+                int read = input.read(content, offset, content.length - offset);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of file " + file);
+                }
+                offset += read;
+            }
+
+            return content;
+        } finally {
+            closeQuietly(input);
+        }
+    }
+
+    /**
+     * Writes the content to a temporary file first, then renames it, so that a reader
+     * never sees a partially written file
+     */
+    public static void writeFileAtomically(File file, byte[] content, int offset, int length) throws IOException {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        FileOutputStream output = null;
+        try {
+            output = new FileOutputStream(tmpFile);
+            output.write(content, offset, length);
+            output.close();
+            output = null;
+
+            if (!tmpFile.renameTo(file)) {
+                throw new IOException("Unable to rename " + tmpFile);
+            }
+        } catch (IOException e) {
+            //noinspection ResultOfMethodCallIgnored
+            tmpFile.delete();
+            throw e;
+        } finally {
+            closeQuietly(output);
+        }
+    }
+
+    public static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+package fr.g123k.deviceapps.utils;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+
+import java.util.Map;
+
+import io.flutter.plugin.common.MethodCall;
+
+/**
+ * Size (in pixels), format and quality used to encode icons.
+ * A size of 0 means the intrinsic size of the icon.
+ */
+public class IconOptions {
+
+    public static final IconOptions DEFAULT = new IconOptions(0, "png", 100);
+
+    private static final String ARG_ICON_SIZE = "icon_size";
+    private static final String ARG_ICON_FORMAT = "icon_format";
+    private static final String ARG_ICON_QUALITY = "icon_quality";
+
+    public final int size;
+    public final String format;
+    public final int quality;
+
+    public IconOptions(int size, @NonNull String format, int quality) {
+        this.size = Math.max(size, 0);
+        this.format = format;
+        this.quality = Math.min(Math.max(quality, 0), 100);
+    }
+
+    public static IconOptions fromMethodCall(MethodCall call) {
+        return call.arguments instanceof Map ? fromArguments((Map<?, ?>) call.arguments) : DEFAULT;
+    }
+
+    public static IconOptions fromArguments(Map<?, ?> arguments) {
+        Object size = arguments.get(ARG_ICON_SIZE);
+        Object format = arguments.get(ARG_ICON_FORMAT);
+        Object quality = arguments.get(ARG_ICON_QUALITY);
+
+        if (size == null && format == null && quality == null) {
+            return DEFAULT;
+        }
+
+        return new IconOptions(
+                size instanceof Number ? ((Number) size).intValue() : DEFAULT.size,
+                format instanceof String ? ((String) format).toLowerCase() : DEFAULT.format,
+                quality instanceof Number ? ((Number) quality).intValue() : DEFAULT.quality
+        );
+    }
+
+    @SuppressWarnings("deprecation")
+    public Bitmap.CompressFormat getCompressFormat() {
+        switch (format) {
+            case "jpeg":
+            case "jpg":
+                return Bitmap.CompressFormat.JPEG;
+            case "webp":
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                    return quality == 100 ? Bitmap.CompressFormat.WEBP_LOSSLESS : Bitmap.CompressFormat.WEBP_LOSSY;
+                }
+                return Bitmap.CompressFormat.WEBP;
+            default:
+                return Bitmap.CompressFormat.PNG;
+        }
+    }
+
+    /**
+     * JPEG doesn't support transparency
+     */
+    public boolean hasAlpha() {
+        return getCompressFormat() != Bitmap.CompressFormat.JPEG;
+    }
+
+    /**
+     * Identifies the encoding in the icons cache (two different options = two different files)
+     */
+    public String getCacheKey() {
+        return getCompressFormat().name().toLowerCase() + '_' + quality + '_' + size;
+    }
+
+}
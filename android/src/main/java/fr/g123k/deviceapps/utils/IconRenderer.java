@@ -0,0 +1,73 @@
+package fr.g123k.deviceapps.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+
+/**
+ * Draws icons directly at the requested size, then encodes them with the requested format
+ * and quality.
+ * The same {@link Bitmap} and {@link Canvas} are kept between two calls (as long as the size
+ * doesn't change), so an instance is not thread-safe and should be used for a batch of icons.
+ */
+public class IconRenderer {
+
+    private final IconOptions options;
+    private final PerfStats stats;
+    private Bitmap bitmap;
+    private Canvas canvas;
+
+    public IconRenderer(IconOptions options, PerfStats stats) {
+        this.options = options;
+        this.stats = stats;
+    }
+
+    public IconOptions getOptions() {
+        return options;
+    }
+
+    public byte[] encode(Drawable drawable) {
+        long start = stats.begin(PerfStats.PHASE_ICON_RENDER);
+        Bitmap icon = render(drawable);
+        stats.end(PerfStats.PHASE_ICON_RENDER, start);
+
+        start = stats.begin(PerfStats.PHASE_ICON_COMPRESS);
+        byte[] bytes = Base64Utils.compress(icon, options.getCompressFormat(), options.quality);
+        stats.end(PerfStats.PHASE_ICON_COMPRESS, start);
+
+        stats.increment(PerfStats.COUNTER_ICONS_ENCODED, 1);
+        stats.increment(PerfStats.COUNTER_ICON_BYTES, bytes.length);
+        return bytes;
+    }
+
+    /**
+     * The returned {@link Bitmap} is only valid until the next call
+     */
+    private Bitmap render(Drawable drawable) {
+        int width = options.size > 0 ? options.size : Math.max(drawable.getIntrinsicWidth(), 1);
+        int height = options.size > 0 ? options.size : Math.max(drawable.getIntrinsicHeight(), 1);
+
+        // No need to draw it again
+        if (options.hasAlpha() && drawable instanceof BitmapDrawable) {
+            Bitmap source = ((BitmapDrawable) drawable).getBitmap();
+            if (source != null && source.getWidth() == width && source.getHeight() == height) {
+                return source;
+            }
+        }
+
+        if (bitmap == null || bitmap.getWidth() != width || bitmap.getHeight() != height) {
+            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            canvas = new Canvas(bitmap);
+        }
+
+        bitmap.eraseColor(options.hasAlpha() ? Color.TRANSPARENT : Color.WHITE);
+
+        drawable.setBounds(0, 0, width, height);
+        drawable.draw(canvas);
+
+        return bitmap;
+    }
+
+}
@@ -0,0 +1,217 @@
+package fr.g123k.deviceapps.utils;
+
+import android.os.Build;
+import android.os.Trace;
+
+import androidx.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and timing histograms of each phase (IPCs, labels, icons, encoding, etc.).
+ * Disabled by default: {@link #begin(String)} then returns 0 and nothing is recorded,
+ * so the overhead is a volatile read.
+ * When enabled, sections can also be sent to systrace/Perfetto (Android 4.3+).
+ */
+public class PerfStats {
+
+    // Timings
+    public static final String PHASE_QUEUE_WAIT = "queue_wait";
+    public static final String PHASE_LIST_PACKAGES = "list_packages";
+    public static final String PHASE_FILTER = "filter";
+    public static final String PHASE_LOAD_LABEL = "load_label";
+    public static final String PHASE_APP_DATA = "app_data";
+    public static final String PHASE_ICON_LOAD = "icon_load";
+    public static final String PHASE_ICON_RENDER = "icon_render";
+    public static final String PHASE_ICON_COMPRESS = "icon_compress";
+    public static final String PHASE_COMPACT_ENCODING = "compact_encoding";
+    public static final String PHASE_SEARCH = "search";
+    public static final String PHASE_APK_DIGEST = "apk_digest";
+    public static final String METHOD_PREFIX = "method_";
+
+    // Counters
+    public static final String COUNTER_PACKAGES_SCANNED = "packages_scanned";
+    public static final String COUNTER_PACKAGES_FILTERED_OUT = "packages_filtered_out";
+    public static final String COUNTER_APP_DATA_CACHE_HITS = "app_data_cache_hits";
+    public static final String COUNTER_LABEL_CACHE_HITS = "label_cache_hits";
+    public static final String COUNTER_ICONS_ENCODED = "icons_encoded";
+    public static final String COUNTER_ICON_BYTES = "icon_bytes";
+    public static final String COUNTER_ICON_CACHE_HITS = "icon_cache_hits";
+    public static final String COUNTER_BYTES_SERIALIZED = "bytes_serialized";
+
+    private static final String TRACE_PREFIX = "DeviceApps:";
+    // Lowest bit of the value returned by begin(): less than 1ns of precision is lost
+    private static final long TRACE_SECTION_OPENED = 1L;
+
+    private final ConcurrentHashMap<String, AtomicLong> counters;
+    private final ConcurrentHashMap<String, Histogram> histograms;
+
+    private volatile boolean enabled;
+    private volatile boolean traceEnabled;
+
+    public PerfStats() {
+        this.counters = new ConcurrentHashMap<>();
+        this.histograms = new ConcurrentHashMap<>();
+    }
+
+    public void setEnabled(boolean enabled, boolean traceEnabled) {
+        this.enabled = enabled;
+        this.traceEnabled = enabled && traceEnabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Must be followed by {@link #end(String, long)} on the same thread
+     *
+     * @return 0 if disabled, otherwise the start time, whose lowest bit tells whether a trace
+     * section was opened (tracing may be toggled in between)
+     */
+    public long begin(@NonNull String phase) {
+        if (!enabled) {
+            return 0;
+        }
+
+        if (traceEnabled) {
+            Trace.beginSection(TRACE_PREFIX + phase);
+            return System.nanoTime() | TRACE_SECTION_OPENED;
+        }
+
+        return System.nanoTime() & ~TRACE_SECTION_OPENED;
+    }
+
+    public void end(@NonNull String phase, long startTime) {
+        if (startTime == 0) {
+            return;
+        }
+
+        if ((startTime & TRACE_SECTION_OPENED) != 0) {
+            Trace.endSection();
+        }
+
+        record(phase, System.nanoTime() - (startTime & ~TRACE_SECTION_OPENED));
+    }
+
+    /**
+     * Records a duration measured by the caller (eg: across threads, so without trace section)
+     */
+    public void record(@NonNull String phase, long durationNanos) {
+        if (!enabled) {
+            return;
+        }
+
+        Histogram histogram = histograms.get(phase);
+        if (histogram == null) {
+            histogram = new Histogram();
+            Histogram previous = histograms.putIfAbsent(phase, histogram);
+            if (previous != null) {
+                histogram = previous;
+            }
+        }
+
+        histogram.add(durationNanos);
+    }
+
+    public void increment(@NonNull String counter, long delta) {
+        if (!enabled) {
+            return;
+        }
+
+        AtomicLong value = counters.get(counter);
+        if (value == null) {
+            value = new AtomicLong();
+            AtomicLong previous = counters.putIfAbsent(counter, value);
+            if (previous != null) {
+                value = previous;
+            }
+        }
+
+        value.addAndGet(delta);
+    }
+
+    public void reset() {
+        counters.clear();
+        histograms.clear();
+    }
+
+    /**
+     * Durations are in milliseconds and percentiles are approximated (upper bound of a
+     * power of 2 bucket in microseconds)
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> countersMap = new HashMap<>(counters.size());
+        for (Map.Entry<String, AtomicLong> counter : counters.entrySet()) {
+            countersMap.put(counter.getKey(), counter.getValue().get());
+        }
+
+        Map<String, Object> timingsMap = new HashMap<>(histograms.size());
+        for (Map.Entry<String, Histogram> histogram : histograms.entrySet()) {
+            timingsMap.put(histogram.getKey(), histogram.getValue().toMap());
+        }
+
+        Map<String, Object> map = new HashMap<>(3);
+        map.put("enabled", enabled);
+        map.put("counters", countersMap);
+        map.put("timings", timingsMap);
+        return map;
+    }
+
+    private static class Histogram {
+        // Bucket i = durations < 2^i microseconds
+        private static final int BUCKETS = 32;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void add(long durationNanos) {
+            long micros = durationNanos / 1000;
+            int bucket = Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+
+            buckets.incrementAndGet(bucket);
+            count.incrementAndGet();
+            totalNanos.addAndGet(durationNanos);
+
+            long max;
+            while (durationNanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, durationNanos)) {
+                // Retry
+            }
+        }
+
+        Map<String, Object> toMap() {
+            long count = this.count.get();
+
+            Map<String, Object> map = new HashMap<>(7);
+            map.put("count", count);
+            map.put("total_ms", totalNanos.get() / 1000000.0);
+            map.put("mean_ms", count > 0 ? totalNanos.get() / 1000000.0 / count : 0.0);
+            map.put("max_ms", maxNanos.get() / 1000000.0);
+            map.put("p50_ms", getPercentile(count, 0.5));
+            map.put("p90_ms", getPercentile(count, 0.9));
+            map.put("p99_ms", getPercentile(count, 0.99));
+            return map;
+        }
+
+        private double getPercentile(long count, double percentile) {
+            long threshold = (long) Math.ceil(count * percentile);
+            long cumulated = 0;
+
+            for (int i = 0; i < BUCKETS; i++) {
+                cumulated += buckets.get(i);
+                if (cumulated >= threshold && cumulated > 0) {
+                    return (1L << i) / 1000.0;
+                }
+            }
+
+            return 0.0;
+        }
+    }
+
+}
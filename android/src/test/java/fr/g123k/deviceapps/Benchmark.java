@@ -0,0 +1,120 @@
+package fr.g123k.deviceapps;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Runs an operation several times and reports its throughput, latency percentiles and
+ * allocations. Allocations are the bytes allocated by the calling thread (HotSpot only): the
+ * operations must not use other threads (eg: {@code max_parallelism} = 1).
+ */
+final class Benchmark {
+
+    interface Operation {
+        /**
+         * @return the number of processed items (apps, icons, events...)
+         */
+        int run() throws Exception;
+    }
+
+    interface Setup {
+        /**
+         * Called before each run, not measured (eg: to clear the caches)
+         */
+        void run() throws Exception;
+    }
+
+    private Benchmark() {
+    }
+
+    static Result measure(String name, int warmUpIterations, int iterations, Setup setup, Operation operation) throws Exception {
+        for (int i = 0; i < warmUpIterations; i++) {
+            if (setup != null) {
+                setup.run();
+            }
+            operation.run();
+        }
+
+        long[] durations = new long[iterations];
+        long items = 0;
+        long allocatedBytes = 0;
+
+        for (int i = 0; i < iterations; i++) {
+            if (setup != null) {
+                setup.run();
+            }
+
+            long allocationStart = getAllocatedBytes();
+            long start = System.nanoTime();
+            items += operation.run();
+            durations[i] = System.nanoTime() - start;
+            allocatedBytes += getAllocatedBytes() - allocationStart;
+        }
+
+        Result result = new Result(name, durations, items, allocatedBytes);
+        System.out.println(result);
+        return result;
+    }
+
+    private static long getAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    static class Result {
+        final String name;
+        final long[] durations;
+        final long items;
+        final long allocatedBytes;
+
+        Result(String name, long[] durations, long items, long allocatedBytes) {
+            this.name = name;
+            this.durations = durations.clone();
+            this.items = items;
+            this.allocatedBytes = allocatedBytes;
+            Arrays.sort(this.durations);
+        }
+
+        long getTotalNanos() {
+            long total = 0;
+            for (long duration : durations) {
+                total += duration;
+            }
+            return total;
+        }
+
+        double getPercentileMs(double percentile) {
+            int index = (int) Math.round((durations.length - 1) * percentile);
+            return durations[index] / 1000000.0;
+        }
+
+        @Override
+        public String toString() {
+            double seconds = getTotalNanos() / 1000000000.0;
+            StringBuilder builder = new StringBuilder(String.format(Locale.ROOT,
+                    "%s: %d runs, %.0f items/s, p50 %.2f ms, p90 %.2f ms",
+                    name,
+                    durations.length,
+                    seconds > 0 ? items / seconds : 0,
+                    getPercentileMs(0.5),
+                    getPercentileMs(0.9)));
+
+            // Below 100 runs, the p99 is the max
+            if (durations.length >= 100) {
+                builder.append(String.format(Locale.ROOT, ", p99 %.2f ms", getPercentileMs(0.99)));
+            }
+
+            builder.append(String.format(Locale.ROOT, ", max %.2f ms, %.1f KB/run, %.1f MB/s allocated",
+                    durations[durations.length - 1] / 1000000.0,
+                    allocatedBytes / 1024.0 / durations.length,
+                    seconds > 0 ? allocatedBytes / 1024.0 / 1024.0 / seconds : 0));
+            return builder.toString();
+        }
+    }
+
+}
@@ -0,0 +1,296 @@
+package fr.g123k.deviceapps;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import android.os.Looper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+import org.robolectric.shadows.ShadowPackageManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fr.g123k.deviceapps.utils.CompactAppsEncoder;
+import fr.g123k.deviceapps.utils.IconOptions;
+import fr.g123k.deviceapps.utils.IconRenderer;
+import fr.g123k.deviceapps.utils.PerfStats;
+import io.flutter.plugin.common.EventChannel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Benchmarks running on the JVM (no device needed), with N synthetic packages:
+ * <pre>
+ * ./gradlew testDebugUnitTest --tests '*DeviceAppsBenchmark' -Ddeviceapps.benchmark.packages=500
+ * </pre>
+ * Each scenario reports its throughput, latency percentiles and allocations.
+ * Cold runs start with empty caches (labels loaded and icons rendered again), warm runs only
+ * read the caches. Everything runs on the calling thread ({@code max_parallelism} = 1), so that
+ * the allocations can be measured.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class DeviceAppsBenchmark {
+
+    private static final int PACKAGES = Integer.getInteger("deviceapps.benchmark.packages", 200);
+    private static final int ITERATIONS = Integer.getInteger("deviceapps.benchmark.iterations", 100);
+    private static final int WARM_UP_ITERATIONS = 5;
+    private static final int ICON_SIZE = 192;
+
+    // Event fan-out: engines attached in the process, each one with several listeners
+    private static final int ENGINES = 3;
+    private static final int SINKS_PER_ENGINE = 2;
+
+    private Context context;
+    private DeviceAppsPlugin plugin;
+    private List<String> packageNames;
+    private List<Drawable> icons;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+        ShadowPackageManager packageManager = shadowOf(context.getPackageManager());
+
+        packageNames = new ArrayList<>(PACKAGES);
+        icons = new ArrayList<>(PACKAGES);
+
+        for (int i = 0; i < PACKAGES; i++) {
+            PackageInfo packageInfo = createPackage(i);
+            Drawable icon = createIcon(i);
+
+            packageManager.installPackage(packageInfo);
+            packageManager.setApplicationIcon(packageInfo.packageName, icon);
+            packageNames.add(packageInfo.packageName);
+            icons.add(icon);
+        }
+
+        plugin = new DeviceAppsPlugin();
+        plugin.attach(context);
+    }
+
+    @After
+    public void tearDown() {
+        plugin.detach();
+    }
+
+    @Test
+    public void listWithoutIcons() throws Exception {
+        measureColdAndWarm("List without icons", createRequest(false));
+    }
+
+    @Test
+    public void listWithIcons() throws Exception {
+        measureColdAndWarm("List with icons", createRequest(true));
+    }
+
+    @Test
+    public void compactEncoding() throws Exception {
+        final List<Map<String, Object>> apps = plugin.getAppsData(plugin.getInstalledPackages(), createRequest(true));
+
+        Benchmark.measure("Compact encoding (with icons)", WARM_UP_ITERATIONS, ITERATIONS, null, new Benchmark.Operation() {
+            @Override
+            public int run() {
+                CompactAppsEncoder.encode(apps);
+                return apps.size();
+            }
+        });
+    }
+
+    @Test
+    public void iconRendering() throws Exception {
+        final IconRenderer iconRenderer = new IconRenderer(new IconOptions(0, "png", 100), new PerfStats());
+
+        Benchmark.measure("Icon rendering (PNG)", WARM_UP_ITERATIONS, ITERATIONS, null, new Benchmark.Operation() {
+            @Override
+            public int run() {
+                for (Drawable icon : icons) {
+                    iconRenderer.encode(icon);
+                }
+                return icons.size();
+            }
+        });
+    }
+
+    @Test
+    public void singleLookup() throws Exception {
+        final String packageName = packageNames.get(0);
+        final IconOptions iconOptions = new IconOptions(0, "png", 100);
+
+        Benchmark.Setup clearCaches = new Benchmark.Setup() {
+            @Override
+            public void run() {
+                plugin.clearCaches();
+            }
+        };
+        Benchmark.Operation lookup = new Benchmark.Operation() {
+            @Override
+            public int run() {
+                return plugin.getApp(packageName, null, InstalledAppsRequest.ICON_OUTPUT_BYTES, null) != null ? 1 : 0;
+            }
+        };
+        Benchmark.Operation lookupWithIcon = new Benchmark.Operation() {
+            @Override
+            public int run() {
+                return plugin.getApp(packageName, iconOptions, InstalledAppsRequest.ICON_OUTPUT_BYTES, null) != null ? 1 : 0;
+            }
+        };
+
+        Benchmark.measure("Single lookup (cold)", WARM_UP_ITERATIONS, ITERATIONS, clearCaches, lookup);
+        Benchmark.measure("Single lookup (warm)", WARM_UP_ITERATIONS, ITERATIONS, null, lookup);
+        Benchmark.measure("Single lookup with icon (cold)", WARM_UP_ITERATIONS, ITERATIONS, clearCaches, lookupWithIcon);
+        Benchmark.measure("Single lookup with icon (warm)", WARM_UP_ITERATIONS, ITERATIONS, null, lookupWithIcon);
+    }
+
+    /**
+     * From the broadcast of the system to the {@link EventChannel.EventSink}s of every engine
+     */
+    @Test
+    public void eventFanOut() throws Exception {
+        final AtomicInteger events = new AtomicInteger();
+        List<DeviceAppsPlugin> plugins = new ArrayList<>(ENGINES);
+        plugins.add(plugin);
+
+        for (int i = 1; i < ENGINES; i++) {
+            DeviceAppsPlugin enginePlugin = new DeviceAppsPlugin();
+            enginePlugin.attach(context);
+            plugins.add(enginePlugin);
+        }
+
+        for (DeviceAppsPlugin enginePlugin : plugins) {
+            for (int i = 0; i < SINKS_PER_ENGINE; i++) {
+                enginePlugin.onListen(null, new CountingSink(events));
+            }
+        }
+
+        final AtomicInteger nextPackage = new AtomicInteger();
+        Benchmark.Result result = Benchmark.measure("Event fan-out (" + ENGINES + " engines x " + SINKS_PER_ENGINE + " sinks)",
+                WARM_UP_ITERATIONS, ITERATIONS, null, new Benchmark.Operation() {
+                    @Override
+                    public int run() {
+                        String packageName = packageNames.get(nextPackage.getAndIncrement() % packageNames.size());
+                        Intent intent = new Intent(Intent.ACTION_PACKAGE_REPLACED, Uri.parse("package:" + packageName));
+                        intent.putExtra(Intent.EXTRA_REPLACING, true);
+
+                        int previousEvents = events.get();
+                        context.sendBroadcast(intent);
+                        shadowOf(Looper.getMainLooper()).idle();
+                        return events.get() - previousEvents;
+                    }
+                });
+
+        assertEquals((long) ENGINES * SINKS_PER_ENGINE * ITERATIONS, result.items);
+
+        for (int i = 1; i < plugins.size(); i++) {
+            plugins.get(i).detach();
+        }
+    }
+
+    private void measureColdAndWarm(String name, final InstalledAppsRequest request) throws Exception {
+        Benchmark.Operation listing = new Benchmark.Operation() {
+            @Override
+            public int run() {
+                return plugin.getAppsData(plugin.getInstalledPackages(), request).size();
+            }
+        };
+
+        Benchmark.Result cold = Benchmark.measure(name + " (cold)", WARM_UP_ITERATIONS, ITERATIONS, new Benchmark.Setup() {
+            @Override
+            public void run() {
+                plugin.clearCaches();
+            }
+        }, listing);
+        Benchmark.measure(name + " (warm)", WARM_UP_ITERATIONS, ITERATIONS, null, listing);
+
+        // The synthetic packages, plus the package of the test itself
+        assertTrue(cold.items >= (long) PACKAGES * ITERATIONS);
+    }
+
+    private static InstalledAppsRequest createRequest(boolean includeIcons) {
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("system_apps", true);
+        arguments.put("max_parallelism", 1);
+
+        if (includeIcons) {
+            arguments.put("include_app_icons", true);
+            arguments.put("app_icons_as_bytes", true);
+        }
+
+        return new InstalledAppsRequest(arguments);
+    }
+
+    private static PackageInfo createPackage(int index) {
+        String packageName = "com.example.synthetic" + index;
+
+        ApplicationInfo applicationInfo = new ApplicationInfo();
+        applicationInfo.packageName = packageName;
+        applicationInfo.nonLocalizedLabel = "Synthetic app " + index;
+        applicationInfo.sourceDir = "/data/app/" + packageName + "/base.apk";
+        applicationInfo.dataDir = "/data/data/" + packageName;
+        applicationInfo.enabled = true;
+        // Some system apps, like on a real device
+        applicationInfo.flags = index % 4 == 0 ? ApplicationInfo.FLAG_SYSTEM : 0;
+
+        PackageInfo packageInfo = new PackageInfo();
+        packageInfo.packageName = packageName;
+        packageInfo.versionName = "1." + index;
+        packageInfo.versionCode = index;
+        packageInfo.firstInstallTime = 1600000000000L + index;
+        packageInfo.lastUpdateTime = 1600000000000L + index;
+        packageInfo.applicationInfo = applicationInfo;
+        return packageInfo;
+    }
+
+    private Drawable createIcon(int index) {
+        Bitmap bitmap = Bitmap.createBitmap(ICON_SIZE, ICON_SIZE, Bitmap.Config.ARGB_8888);
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(Color.HSVToColor(new float[]{(index * 37) % 360, 0.7f, 0.9f}));
+
+        Canvas canvas = new Canvas(bitmap);
+        canvas.drawCircle(ICON_SIZE / 2f, ICON_SIZE / 2f, ICON_SIZE / 2f, paint);
+        return new BitmapDrawable(context.getResources(), bitmap);
+    }
+
+    private static class CountingSink implements EventChannel.EventSink {
+        private final AtomicInteger events;
+
+        CountingSink(AtomicInteger events) {
+            this.events = events;
+        }
+
+        @Override
+        public void success(Object event) {
+            events.incrementAndGet();
+        }
+
+        @Override
+        public void error(String errorCode, String errorMessage, Object errorDetails) {
+        }
+
+        @Override
+        public void endOfStream() {
+        }
+    }
+
+}
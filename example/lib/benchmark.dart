@@ -0,0 +1,180 @@
+import 'package:device_apps/device_apps.dart';
+import 'package:flutter/material.dart';
+
+/// Measures the main operations of the plugin on the current device.
+/// Listings are measured twice: cold (the caches are cleared before each run,
+/// so names and icons are loaded again) and warm (only cache reads).
+/// The native stats are enabled to report the work done per run (packages
+/// scanned, names loaded, icons encoded, bytes allocated...).
+class BenchmarkScreen extends StatefulWidget {
+  @override
+  _BenchmarkScreenState createState() => _BenchmarkScreenState();
+}
+
+class _BenchmarkScreenState extends State<BenchmarkScreen> {
+  static const int _warmUpIterations = 2;
+  static const int _coldIterations = 20;
+  static const int _iterations = 30;
+  static const int _lookupIterations = 50;
+
+  final List<_BenchmarkResult> _results = <_BenchmarkResult>[];
+  bool _running = false;
+
+  @override
+  Widget build(BuildContext context) {
+    return Scaffold(
+      appBar: AppBar(title: Text('Benchmark')),
+      floatingActionButton: FloatingActionButton(
+        onPressed: _running ? null : _run,
+        child: _running
+            ? const CircularProgressIndicator(
+                valueColor: AlwaysStoppedAnimation<Color>(Colors.white))
+            : const Icon(Icons.play_arrow),
+      ),
+      body: ListView.separated(
+        itemBuilder: (BuildContext context, int position) {
+          _BenchmarkResult result = _results[position];
+          return ListTile(
+            title: Text(result.name),
+            subtitle: Text(result.toString()),
+          );
+        },
+        separatorBuilder: (BuildContext context, int position) =>
+            const Divider(height: 1.0),
+        itemCount: _results.length,
+      ),
+    );
+  }
+
+  Future<void> _run() async {
+    setState(() {
+      _running = true;
+      _results.clear();
+    });
+
+    await DeviceApps.setStatsEnabled(true);
+
+    await _measureColdAndWarm('List without icons',
+        () async => (await DeviceApps.getInstalledApplications()).length);
+    await _measureColdAndWarm(
+        'List with icons',
+        () async => (await DeviceApps.getInstalledApplications(
+                includeAppIcons: true))
+            .length);
+    await _measureColdAndWarm(
+        'List with icons (compact)',
+        () async => (await DeviceApps.getInstalledApplications(
+                includeAppIcons: true, compact: true))
+            .length);
+    await _measureColdAndWarm(
+        'Partial list (version code)',
+        () async => (await DeviceApps.getPartialInstalledApplications(
+                fields: <ApplicationField>{ApplicationField.versionCode}))
+            .length);
+
+    List<Application> apps = await DeviceApps.getInstalledApplications();
+    if (apps.isNotEmpty) {
+      String packageName = apps.first.packageName;
+      await _measure('Single lookup', _lookupIterations,
+          () async => (await DeviceApps.getApp(packageName)) != null ? 1 : 0);
+      await _measure(
+          'Single lookup with icon',
+          _lookupIterations,
+          () async =>
+              (await DeviceApps.getApp(packageName, true)) != null ? 1 : 0);
+    }
+
+    await DeviceApps.setStatsEnabled(false);
+
+    setState(() => _running = false);
+  }
+
+  /// Cold runs start with empty caches (names and icons are loaded again),
+  /// warm runs only read the caches
+  Future<void> _measureColdAndWarm(
+      String name, Future<int> Function() operation) async {
+    await _measure('$name (cold)', _coldIterations, operation, cold: true);
+    await _measure('$name (warm)', _iterations, operation);
+  }
+
+  /// [operation] returns the number of processed apps
+  Future<void> _measure(
+      String name, int iterations, Future<int> Function() operation,
+      {bool cold: false}) async {
+    for (int i = 0; i < _warmUpIterations; i++) {
+      await operation();
+    }
+
+    List<int> durations = <int>[];
+    int apps = 0;
+    Stopwatch stopwatch = Stopwatch();
+    await DeviceApps.resetStats();
+
+    for (int i = 0; i < iterations; i++) {
+      // Not part of the measure
+      if (cold) {
+        await DeviceApps.clearCaches();
+      }
+
+      stopwatch
+        ..reset()
+        ..start();
+      apps += await operation();
+      stopwatch.stop();
+      durations.add(stopwatch.elapsedMicroseconds);
+    }
+
+    DeviceAppsStats stats = await DeviceApps.getStats();
+
+    if (!mounted) {
+      return;
+    }
+
+    setState(() =>
+        _results.add(_BenchmarkResult(name, durations, apps, stats)));
+  }
+}
+
+class _BenchmarkResult {
+  final String name;
+  final List<int> durations;
+  final int apps;
+
+  /// Native counters, for all the runs
+  final DeviceAppsStats stats;
+
+  _BenchmarkResult(this.name, List<int> durations, this.apps, this.stats)
+      : durations = List<int>.of(durations)..sort();
+
+  double _percentile(double percentile) {
+    int index = ((durations.length - 1) * percentile).round();
+    return durations[index] / 1000.0;
+  }
+
+  double get _appsPerSecond {
+    int total = durations.fold(0, (int sum, int duration) => sum + duration);
+    return total == 0 ? 0 : apps * 1000000 / total;
+  }
+
+  /// Average of a counter (or of the number of times a phase ran) per run
+  String _perRun(int? value) {
+    return ((value ?? 0) / durations.length).toStringAsFixed(0);
+  }
+
+  @override
+  String toString() {
+    int bytes = (stats.counters['bytes_serialized'] ?? 0) +
+        (stats.counters['icon_bytes'] ?? 0);
+
+    return '${durations.length} runs, '
+        '${_appsPerSecond.toStringAsFixed(0)} apps/s\n'
+        'p50: ${_percentile(0.5).toStringAsFixed(1)} ms, '
+        'p90: ${_percentile(0.9).toStringAsFixed(1)} ms, '
+        'max: ${(durations.last / 1000.0).toStringAsFixed(1)} ms\n'
+        'Per run: ${_perRun(stats.counters['packages_scanned'])} packages, '
+        '${_perRun(stats.timings['load_label']?.count)} names loaded, '
+        '${_perRun(stats.timings['app_data']?.count)} apps built, '
+        '${_perRun(stats.counters['icons_encoded'])} icons encoded, '
+        '${_perRun(bytes ~/ 1024)} KB allocated for icons and transfer';
+  }
+}
@@ -1,5 +1,6 @@
 import 'package:device_apps_example/apps_events.dart';
 import 'package:device_apps_example/apps_list.dart';
+import 'package:device_apps_example/benchmark.dart';
 import 'package:flutter/material.dart';
 
 void main() => runApp(MaterialApp(home: const ExampleApp()));
@@ -32,7 +33,16 @@ class ExampleApp extends StatelessWidget {
                         builder: (BuildContext context) => AppsEventsScreen()),
                   );
                 },
-                child: Text('Applications events'))
+                child: Text('Applications events')),
+            TextButton(
+                onPressed: () {
+                  Navigator.push(
+                    context,
+                    MaterialPageRoute<Object>(
+                        builder: (BuildContext context) => BenchmarkScreen()),
+                  );
+                },
+                child: Text('Benchmark'))
           ],
         ),
       ),
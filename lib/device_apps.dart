@@ -1,3 +1,6 @@
 export 'src/model/application_category.dart';
 export 'src/model/application_event.dart';
+export 'src/model/application_field.dart' show ApplicationField;
+export 'src/model/application_icon_options.dart';
+export 'src/model/application_query.dart';
 export 'src/plugin.dart';
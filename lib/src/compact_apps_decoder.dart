@@ -0,0 +1,96 @@
+import 'dart:convert';
+import 'dart:typed_data';
+
+/// Decodes the columnar encoding of a list of applications (compact mode).
+/// Must be kept in sync with CompactAppsEncoder.java
+///
+/// Strings (including the keys) are only decoded once and icons are views on
+/// the original buffer (no copy).
+List<Map<String, Object?>> decodeCompactApps(Uint8List bytes) {
+  final ByteData data =
+      ByteData.view(bytes.buffer, bytes.offsetInBytes, bytes.lengthInBytes);
+  int offset = 0;
+
+  int readInt32() {
+    final int value = data.getInt32(offset);
+    offset += 4;
+    return value;
+  }
+
+  final int version = readInt32();
+  if (version != _formatVersion) {
+    throw Exception('Unsupported format version: $version');
+  }
+
+  final int appsCount = readInt32();
+
+  final int stringsCount = readInt32();
+  final List<String> strings = List<String>.generate(stringsCount, (_) {
+    final int length = readInt32();
+    final String string = utf8.decode(
+        Uint8List.sublistView(bytes, offset, offset + length));
+    offset += length;
+    return string;
+  }, growable: false);
+
+  final List<Map<String, Object?>> apps = List<Map<String, Object?>>.generate(
+      appsCount, (_) => <String, Object?>{},
+      growable: false);
+
+  final int fieldsCount = readInt32();
+  for (int i = 0; i < fieldsCount; i++) {
+    final String key = strings[readInt32()];
+    final int type = data.getInt8(offset++);
+
+    final int flagsOffset = offset;
+    offset += appsCount;
+
+    for (int app = 0; app < appsCount; app++) {
+      final int flag = bytes[flagsOffset + app];
+      if (flag == _flagAbsent) {
+        continue;
+      } else if (flag == _flagNull) {
+        apps[app][key] = null;
+        continue;
+      }
+
+      switch (type) {
+        case _typeString:
+          apps[app][key] = strings[readInt32()];
+          break;
+        case _typeInt:
+          apps[app][key] = readInt32();
+          break;
+        case _typeLong:
+          apps[app][key] = data.getInt64(offset);
+          offset += 8;
+          break;
+        case _typeBoolean:
+          apps[app][key] = flag == _flagTrue;
+          break;
+        case _typeBytes:
+          final int length = readInt32();
+          apps[app][key] =
+              Uint8List.sublistView(bytes, offset, offset + length);
+          offset += length;
+          break;
+        default:
+          throw Exception('Unsupported type: $type');
+      }
+    }
+  }
+
+  return apps;
+}
+
+const int _formatVersion = 1;
+
+const int _typeString = 1;
+const int _typeInt = 2;
+const int _typeLong = 3;
+const int _typeBoolean = 4;
+const int _typeBytes = 5;
+
+const int _flagAbsent = 0;
+const int _flagTrue = 2;
+const int _flagNull = 3;
@@ -0,0 +1,55 @@
+/// An attribute of an application, which can be requested independently of the
+/// others (see [DeviceApps.getPartialInstalledApplications])
+enum ApplicationField {
+  /// Be aware that the name is the most expensive field to compute.
+  /// Without it, the list of apps is a lot faster to obtain.
+  appName,
+  apkFilePath,
+  versionName,
+  versionCode,
+  dataDir,
+  systemApp,
+  installTimeMillis,
+  updateTimeMillis,
+  category,
+  enabled,
+
+  /// SHA-256 (hexadecimal) of the APK (with split APKs: SHA-256 of the
+  /// concatenated digests of the base APK, then of each split).
+  /// Never included by default: the APKs have to be read. The digest is
+  /// cached, so an APK is only read again when the app is updated.
+  apkDigest,
+
+  /// Total size in bytes of the APK (and of its splits)
+  apkSize,
+}
+
+/// Name of the field used by the plugin
+String applicationFieldKey(ApplicationField field) {
+  switch (field) {
+    case ApplicationField.appName:
+      return 'app_name';
+    case ApplicationField.apkFilePath:
+      return 'apk_file_path';
+    case ApplicationField.versionName:
+      return 'version_name';
+    case ApplicationField.versionCode:
+      return 'version_code';
+    case ApplicationField.dataDir:
+      return 'data_dir';
+    case ApplicationField.systemApp:
+      return 'system_app';
+    case ApplicationField.installTimeMillis:
+      return 'install_time';
+    case ApplicationField.updateTimeMillis:
+      return 'update_time';
+    case ApplicationField.category:
+      return 'category';
+    case ApplicationField.apkDigest:
+      return 'apk_digest';
+    case ApplicationField.apkSize:
+      return 'apk_size';
+    default:
+      return 'is_enabled';
+  }
+}
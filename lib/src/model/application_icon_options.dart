@@ -0,0 +1,51 @@
+/// Format used to encode the icon of an application
+enum ApplicationIconFormat {
+  /// Lossless, with transparency (default)
+  png,
+
+  /// Lossy (or lossless with a quality of 100), with transparency
+  webp,
+
+  /// Lossy, without transparency (a white background will be used)
+  jpeg,
+}
+
+/// How the icon of an application should be generated.
+/// A smaller [size] or a lossy [format] will reduce the time and the memory
+/// needed to generate the icons.
+class ApplicationIconOptions {
+  /// Width and height of the icon in pixels.
+  /// If [null], the original size of the icon will be used.
+  final int? size;
+
+  final ApplicationIconFormat format;
+
+  /// Between 0 and 100 (ignored for [ApplicationIconFormat.png])
+  final int quality;
+
+  const ApplicationIconOptions({
+    this.size,
+    this.format = ApplicationIconFormat.png,
+    this.quality = 100,
+  })  : assert(size == null || size > 0),
+        assert(quality >= 0 && quality <= 100);
+
+  Map<String, Object> toMap() {
+    return <String, Object>{
+      if (size != null) 'icon_size': size!,
+      'icon_format': _formatName(format),
+      'icon_quality': quality,
+    };
+  }
+
+  static String _formatName(ApplicationIconFormat format) {
+    switch (format) {
+      case ApplicationIconFormat.webp:
+        return 'webp';
+      case ApplicationIconFormat.jpeg:
+        return 'jpeg';
+      default:
+        return 'png';
+    }
+  }
+}
@@ -0,0 +1,115 @@
+import 'application_category.dart';
+
+/// Attribute used to sort the applications (see [ApplicationQuery])
+enum ApplicationSort {
+  packageName,
+
+  /// Be aware that the name of each application has to be loaded
+  appName,
+  installTime,
+  updateTime,
+}
+
+/// Filters, sort and pagination applied by the plugin before the data of
+/// each application is computed. Excluded applications are thus almost free.
+///
+/// Only [labelContains] and [ApplicationSort.appName] require to load the name
+/// of each application.
+class ApplicationQuery {
+  /// Only applications in one of these categories (Android 26+ only, the
+  /// category will be [ApplicationCategory.undefined] on older versions)
+  final Set<ApplicationCategory>? categories;
+
+  /// Only enabled ([true]) or disabled ([false]) applications
+  final bool? enabled;
+
+  /// Only applications installed after this date
+  final DateTime? installedAfter;
+
+  /// Only applications updated after this date
+  final DateTime? updatedAfter;
+
+  final String? packageNamePrefix;
+
+  /// Only applications whose name contains this text (case-insensitive)
+  final String? labelContains;
+
+  final ApplicationSort? sortBy;
+  final bool sortDescending;
+
+  /// Number of applications to skip (after the sort)
+  final int offset;
+
+  /// Maximum number of applications to return
+  final int? limit;
+
+  const ApplicationQuery({
+    this.categories,
+    this.enabled,
+    this.installedAfter,
+    this.updatedAfter,
+    this.packageNamePrefix,
+    this.labelContains,
+    this.sortBy,
+    this.sortDescending = false,
+    this.offset = 0,
+    this.limit,
+  })  : assert(offset >= 0),
+        assert(limit == null || limit > 0);
+
+  Map<String, Object> toMap() {
+    return <String, Object>{
+      if (categories != null)
+        'categories': categories!.map(_categoryId).toList(growable: false),
+      if (enabled != null) 'enabled': enabled!,
+      if (installedAfter != null)
+        'installed_after': installedAfter!.millisecondsSinceEpoch,
+      if (updatedAfter != null)
+        'updated_after': updatedAfter!.millisecondsSinceEpoch,
+      if (packageNamePrefix != null) 'package_name_prefix': packageNamePrefix!,
+      if (labelContains != null) 'label_contains': labelContains!,
+      if (sortBy != null) 'sort_by': _sortName(sortBy!),
+      'sort_descending': sortDescending,
+      'offset': offset,
+      if (limit != null) 'limit': limit!,
+    };
+  }
+
+  /// Mapping of Android categories
+  /// [https://developer.android.com/reference/kotlin/android/content/pm/ApplicationInfo]
+  static int _categoryId(ApplicationCategory category) {
+    switch (category) {
+      case ApplicationCategory.game:
+        return 0;
+      case ApplicationCategory.audio:
+        return 1;
+      case ApplicationCategory.video:
+        return 2;
+      case ApplicationCategory.image:
+        return 3;
+      case ApplicationCategory.social:
+        return 4;
+      case ApplicationCategory.news:
+        return 5;
+      case ApplicationCategory.maps:
+        return 6;
+      case ApplicationCategory.productivity:
+        return 7;
+      default:
+        return -1;
+    }
+  }
+
+  static String _sortName(ApplicationSort sort) {
+    switch (sort) {
+      case ApplicationSort.appName:
+        return 'app_name';
+      case ApplicationSort.installTime:
+        return 'install_time';
+      case ApplicationSort.updateTime:
+        return 'update_time';
+      default:
+        return 'package_name';
+    }
+  }
+}
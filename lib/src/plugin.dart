@@ -1,12 +1,17 @@
 import 'dart:async';
 import 'dart:convert';
+import 'dart:io';
 import 'dart:typed_data';
 
 import 'package:flutter/cupertino.dart';
 import 'package:flutter/services.dart';
 
+import 'compact_apps_decoder.dart';
 import 'model/application_category.dart';
 import 'model/application_event.dart';
+import 'model/application_field.dart';
+import 'model/application_icon_options.dart';
+import 'model/application_query.dart';
 
 /// Plugin to list applications installed on an Android device
 /// iOS is not supported
@@ -15,6 +20,10 @@ class DeviceApps {
       MethodChannel('g123k/device_apps');
   static const EventChannel _eventChannel =
       EventChannel('g123k/device_apps_events');
+  static const EventChannel _batchedEventChannel =
+      EventChannel('g123k/device_apps_events_batched');
+  static const EventChannel _installedAppsChannel =
+      EventChannel('g123k/device_apps_installed_apps');
 
   /// List installed applications on the device
   /// [includeSystemApps] will also include system apps (or pre-installed) like
@@ -24,40 +33,213 @@ class DeviceApps {
   /// To get the icon you have to cast the object to [ApplicationWithIcon]
   /// [onlyAppsWithLaunchIntent] will only list applications when an entrypoint.
   /// It is similar to what a launcher will display
+  /// [iconOptions] allows to change the size, format and quality of the icons
+  /// [maxParallelism] limits the number of threads used to list applications
+  /// (by default, all CPU cores are used)
+  /// [query] filters, sorts and paginates the applications before their data
+  /// (and icons) are computed
+  /// [compact] sends the list with a compact encoding, which is faster to
+  /// transfer for long lists
+  /// [iconsAsFiles] writes each icon to a file (reused until the app is
+  /// updated) and only sends its path: cast the object to
+  /// [ApplicationWithIconFile]. The memory usage then stays low, whatever the
+  /// number of applications.
   static Future<List<Application>> getInstalledApplications({
     bool includeSystemApps: false,
     bool includeAppIcons: false,
+    bool iconsAsFiles: false,
     bool onlyAppsWithLaunchIntent: false,
+    ApplicationIconOptions iconOptions: const ApplicationIconOptions(),
+    int? maxParallelism,
+    ApplicationQuery? query,
+    bool compact: false,
   }) async {
     try {
-      final Object apps =
-          await _methodChannel.invokeMethod('getInstalledApps', <String, bool>{
+      final Object apps = await _methodChannel
+          .invokeMethod('getInstalledApps', <String, Object>{
         'system_apps': includeSystemApps,
         'include_app_icons': includeAppIcons,
-        'only_apps_with_launch_intent': onlyAppsWithLaunchIntent
+        'app_icons_as_bytes': true,
+        'app_icons_as_files': iconsAsFiles,
+        'only_apps_with_launch_intent': onlyAppsWithLaunchIntent,
+        if (maxParallelism != null) 'max_parallelism': maxParallelism,
+        if (query != null) 'query': query.toMap(),
+        'compact': compact,
+        ...iconOptions.toMap(),
       });
 
+      return _parseApplications(apps);
+    } catch (err) {
+      print(err);
+      return List<Application>.empty();
+    }
+  }
+
+  /// Same as [getInstalledApplications], but applications are sent by chunks
+  /// of [chunkSize] items, as soon as they are ready.
+  /// The first items are thus available way faster (especially with icons)
+  /// and the memory usage is lower.
+  /// The [Stream] is closed once all applications are sent.
+  ///
+  /// Note: only one [Stream] can be listened at a time. Listening to a new one
+  /// will stop the previous one.
+  static Stream<List<Application>> streamInstalledApplications({
+    bool includeSystemApps: false,
+    bool includeAppIcons: false,
+    bool iconsAsFiles: false,
+    bool onlyAppsWithLaunchIntent: false,
+    ApplicationIconOptions iconOptions: const ApplicationIconOptions(),
+    int? maxParallelism,
+    ApplicationQuery? query,
+    int chunkSize: 20,
+    bool compact: false,
+  }) {
+    assert(chunkSize > 0);
+
+    return _installedAppsChannel
+        .receiveBroadcastStream(<String, Object>{
+          'system_apps': includeSystemApps,
+          'include_app_icons': includeAppIcons,
+          'app_icons_as_bytes': true,
+          'app_icons_as_files': iconsAsFiles,
+          'only_apps_with_launch_intent': onlyAppsWithLaunchIntent,
+          'chunk_size': chunkSize,
+          if (maxParallelism != null) 'max_parallelism': maxParallelism,
+          if (query != null) 'query': query.toMap(),
+          'compact': compact,
+          ...iconOptions.toMap(),
+        })
+        .map((dynamic apps) => _parseApplications(apps))
+        .handleError((Object err) => print(err));
+  }
+
+  /// Returns the applications added, updated or removed since the [token] of
+  /// a previous call was generated.
+  /// With a [null] token (eg: the first call), all applications are returned
+  /// as "added". Keep the [ApplicationsChanges.token] of the result for the
+  /// next call.
+  /// If the [token] is no longer valid, [ApplicationsChanges.reset] will be
+  /// [true] and all applications will be returned as "added".
+  /// Several callers (eg: multiple engines) can sync with their own token:
+  /// the 8 most recently used tokens remain valid.
+  ///
+  /// The same arguments should be used for every call with a given token.
+  static Future<ApplicationsChanges> getInstalledApplicationsChangedSince(
+    String? token, {
+    bool includeSystemApps: false,
+    bool includeAppIcons: false,
+    bool onlyAppsWithLaunchIntent: false,
+    ApplicationIconOptions iconOptions: const ApplicationIconOptions(),
+  }) async {
+    final Map<dynamic, dynamic>? changes = await _methodChannel
+        .invokeMethod<Map<dynamic, dynamic>>(
+            'getInstalledAppsChangedSince', <String, Object>{
+      if (token != null) 'token': token,
+      'system_apps': includeSystemApps,
+      'include_app_icons': includeAppIcons,
+      'app_icons_as_bytes': true,
+      'only_apps_with_launch_intent': onlyAppsWithLaunchIntent,
+      ...iconOptions.toMap(),
+    });
+
+    if (changes == null) {
+      throw Exception('Unable to get the changes');
+    }
+
+    return ApplicationsChanges._fromMap(changes);
+  }
+
+  /// Same as [getInstalledApplications], but only the requested [fields] are
+  /// computed (the package name is always available). Each missing field will
+  /// be [null] in the returned [PartialApplication].
+  ///
+  /// Requesting only a few fields is faster, especially without
+  /// [ApplicationField.appName].
+  static Future<List<PartialApplication>> getPartialInstalledApplications({
+    required Set<ApplicationField> fields,
+    bool includeSystemApps: false,
+    bool onlyAppsWithLaunchIntent: false,
+    int? maxParallelism,
+    ApplicationQuery? query,
+    bool compact: false,
+  }) async {
+    try {
+      Object? apps = await _methodChannel
+          .invokeMethod('getInstalledApps', <String, Object>{
+        'system_apps': includeSystemApps,
+        'only_apps_with_launch_intent': onlyAppsWithLaunchIntent,
+        'fields': fields.map(applicationFieldKey).toList(growable: false),
+        if (maxParallelism != null) 'max_parallelism': maxParallelism,
+        if (query != null) 'query': query.toMap(),
+        'compact': compact,
+      });
+
+      if (apps is Uint8List) {
+        apps = decodeCompactApps(apps);
+      }
+
       if (apps is Iterable) {
-        List<Application> list = <Application>[];
-        for (Object app in apps) {
-          if (app is Map) {
-            try {
-              list.add(Application._(app));
-            } catch (e, trace) {
-              if (e is AssertionError) {
-                print('[DeviceApps] Unable to add the following app: $app');
-              } else {
-                print('[DeviceApps] $e $trace');
-              }
-            }
-          }
-        }
-        return list;
+        return apps
+            .whereType<Map<dynamic, dynamic>>()
+            .map((Map<dynamic, dynamic> app) => PartialApplication._fromMap(app))
+            .toList(growable: false);
       } else {
-        return List<Application>.empty();
+        return List<PartialApplication>.empty();
       }
     } catch (err) {
       print(err);
+      return List<PartialApplication>.empty();
+    }
+  }
+
+  /// Same as [getApp], but only the requested [fields] are computed
+  static Future<PartialApplication?> getPartialApp(
+    String packageName, {
+    required Set<ApplicationField> fields,
+  }) async {
+    if (packageName.isEmpty) {
+      throw Exception('The package name can not be empty');
+    }
+    try {
+      final Object? app = await _methodChannel
+          .invokeMethod('getApp', <String, Object>{
+        'package_name': packageName,
+        'fields': fields.map(applicationFieldKey).toList(growable: false),
+      });
+
+      if (app != null && app is Map<dynamic, dynamic>) {
+        return PartialApplication._fromMap(app);
+      } else {
+        return null;
+      }
+    } catch (err) {
+      print(err);
+      return null;
+    }
+  }
+
+  static List<Application> _parseApplications(Object? apps) {
+    if (apps is Uint8List) {
+      apps = decodeCompactApps(apps);
+    }
+
+    if (apps is Iterable) {
+      List<Application> list = <Application>[];
+      for (Object app in apps) {
+        if (app is Map) {
+          try {
+            list.add(Application._(app));
+          } catch (e, trace) {
+            if (e is AssertionError) {
+              print('[DeviceApps] Unable to add the following app: $app');
+            } else {
+              print('[DeviceApps] $e $trace');
+            }
+          }
+        }
+      }
+      return list;
+    } else {
       return List<Application>.empty();
     }
   }
@@ -65,9 +247,11 @@ class DeviceApps {
   /// Provide all information for a given app by its [packageName]
   /// [includeAppIcon] will also include the icon for the app.
   /// To get it, you have to cast the object to [ApplicationWithIcon].
+  /// [iconOptions] allows to change the size, format and quality of the icon
   static Future<Application?> getApp(
     String packageName, [
     bool includeAppIcon = false,
+    ApplicationIconOptions iconOptions = const ApplicationIconOptions(),
   ]) async {
     if (packageName.isEmpty) {
       throw Exception('The package name can not be empty');
@@ -76,7 +260,9 @@ class DeviceApps {
       final Object? app = await _methodChannel.invokeMethod(
           'getApp', <String, Object>{
         'package_name': packageName,
-        'include_app_icon': includeAppIcon
+        'include_app_icon': includeAppIcon,
+        'app_icon_as_bytes': true,
+        ...iconOptions.toMap(),
       });
 
       if (app != null && app is Map<dynamic, dynamic>) {
@@ -90,6 +276,163 @@ class DeviceApps {
     }
   }
 
+  /// Batch version of [getApp]: provide all information for a list of
+  /// [packageNames], in a single call.
+  /// The key of the [Map] is the package name and the value is [null] if the
+  /// app is not installed.
+  /// [includeAppIcons] will also include the icon for each app.
+  static Future<Map<String, Application?>> getApps(
+    List<String> packageNames, {
+    bool includeAppIcons: false,
+    ApplicationIconOptions iconOptions: const ApplicationIconOptions(),
+  }) async {
+    try {
+      final Map<dynamic, dynamic>? apps = await _methodChannel
+          .invokeMethod<Map<dynamic, dynamic>>('getApps', <String, Object>{
+        'package_names': packageNames,
+        'include_app_icons': includeAppIcons,
+        'app_icons_as_bytes': true,
+        ...iconOptions.toMap(),
+      });
+
+      final Map<String, Application?> result = <String, Application?>{};
+      for (String packageName in packageNames) {
+        final Object? app = apps?[packageName];
+        result[packageName] = app is Map ? Application._(app) : null;
+      }
+      return result;
+    } catch (err) {
+      print(err);
+      return <String, Application?>{
+        for (String packageName in packageNames) packageName: null,
+      };
+    }
+  }
+
+  /// Returns the applications whose name (or package name) matches the
+  /// [query], the best matches first (eg: for a search field).
+  /// The search ignores the case and the accents.
+  ///
+  /// The search index is built by the first call (as long as listing all
+  /// applications), then kept up to date: the next calls are very fast.
+  /// Icons are not included (see [getAppIcons]).
+  static Future<List<Application>> searchApps(
+    String query, {
+    int limit: 20,
+    bool includeSystemApps: false,
+  }) async {
+    try {
+      final Object? apps =
+          await _methodChannel.invokeMethod('searchApps', <String, Object>{
+        'query': query,
+        'limit': limit,
+        'system_apps': includeSystemApps,
+      });
+
+      return _parseApplications(apps);
+    } catch (err) {
+      print(err);
+      return List<Application>.empty();
+    }
+  }
+
+  static int _nextIconsRequestId = 0;
+
+  /// Only generates the icons of the given [packageNames] (without the other
+  /// attributes), eg: for the visible rows of a list.
+  /// Icons of the requests with the highest [priority] are generated first
+  /// (eg: visible rows before a prefetch).
+  /// The request can be cancelled with [ApplicationIconsRequest.cancel] (eg:
+  /// when its rows are scrolled off screen).
+  static ApplicationIconsRequest getAppIcons(
+    List<String> packageNames, {
+    ApplicationIconOptions iconOptions: const ApplicationIconOptions(),
+    int priority: 0,
+  }) {
+    final int requestId = _nextIconsRequestId++;
+
+    final Future<Map<String, Uint8List?>> icons = _methodChannel
+        .invokeMethod<Map<dynamic, dynamic>>('getAppIcons', <String, Object>{
+          'request_id': requestId,
+          'package_names': packageNames,
+          'priority': priority,
+          ...iconOptions.toMap(),
+        })
+        .then((Map<dynamic, dynamic>? icons) => <String, Uint8List?>{
+              for (String packageName in packageNames)
+                if (icons != null && icons.containsKey(packageName))
+                  packageName: icons[packageName] as Uint8List?,
+            })
+        .catchError((dynamic err) {
+          print(err);
+          return <String, Uint8List?>{};
+        });
+
+    return ApplicationIconsRequest._(requestId, icons);
+  }
+
+  /// Enables the recording of counters and timings (disabled by default), to
+  /// know which phase is slow (IPCs, names, icons, encoding…).
+  /// With [trace], each phase is also visible in systrace / Perfetto
+  /// (Android 4.3+).
+  static Future<void> setStatsEnabled(bool enabled, {bool trace: false}) {
+    return _methodChannel.invokeMethod<void>(
+      'setStatsEnabled',
+      <String, bool>{
+        'enabled': enabled,
+        'trace': trace,
+      },
+    );
+  }
+
+  /// Counters and timings recorded since the stats were enabled (or reset)
+  static Future<DeviceAppsStats> getStats() async {
+    final Map<dynamic, dynamic>? stats =
+        await _methodChannel.invokeMethod<Map<dynamic, dynamic>>('getStats');
+
+    if (stats == null) {
+      throw Exception('Unable to get the stats');
+    }
+
+    return DeviceAppsStats._fromMap(stats);
+  }
+
+  static Future<void> resetStats() {
+    return _methodChannel.invokeMethod<void>('resetStats');
+  }
+
+  /// Removes the cached data, names and icons (in memory and on disk), so
+  /// that the next calls are as slow as the first one.
+  /// Mostly useful to measure cold listings, as the caches are already
+  /// refreshed when an app changes.
+  static Future<void> clearCaches() {
+    return _methodChannel.invokeMethod<void>('clearCaches');
+  }
+
+  /// Batch version of [isAppInstalled]: returns whether each of the
+  /// [packageNames] is installed on the device, in a single call.
+  static Future<Map<String, bool>> areAppsInstalled(
+    List<String> packageNames,
+  ) async {
+    Map<dynamic, dynamic>? installedApps;
+
+    try {
+      installedApps = await _methodChannel.invokeMethod<Map<dynamic, dynamic>>(
+        'areAppsInstalled',
+        <String, Object>{
+          'package_names': packageNames,
+        },
+      );
+    } catch (err) {
+      print(err);
+    }
+
+    return <String, bool>{
+      for (String packageName in packageNames)
+        packageName: installedApps?[packageName] == true,
+    };
+  }
+
   /// Returns whether a given [packageName] is installed on the device
   /// You will then receive in return a boolean
   static Future<bool> isAppInstalled(String packageName) {
@@ -169,6 +512,23 @@ class DeviceApps {
             ApplicationEvent._(event as Map<dynamic, dynamic>)))
         .handleError((Object err) => null);
   }
+
+  /// Same as [listenToAppsChanges], but events are coalesced by package during
+  /// a [window] and then sent all at once. Useful during bulk updates (eg:
+  /// from the Play Store) to only rebuild the UI once per burst of events.
+  static Stream<List<ApplicationEvent>> listenToAppsChangesBatched({
+    Duration window: const Duration(milliseconds: 500),
+  }) {
+    return _batchedEventChannel
+        .receiveBroadcastStream(<String, int>{
+          'window_ms': window.inMilliseconds,
+        })
+        .map((dynamic events) => (events as List<dynamic>)
+            .map((dynamic event) =>
+                ApplicationEvent._(event as Map<dynamic, dynamic>))
+            .toList(growable: false))
+        .handleError((Object err) => null);
+  }
 }
 
 /// The Base class to reprend an application (= a package name)
@@ -180,6 +540,176 @@ class _BaseApplication {
       : packageName = map['package_name'] as String;
 }
 
+/// Result of [DeviceApps.getInstalledApplicationsChangedSince]
+class ApplicationsChanges {
+  /// To give to the next call
+  final String token;
+
+  /// [true] if the previous token was [null] or invalid: [added] then contains
+  /// all applications and the previous list should be discarded
+  final bool reset;
+
+  final List<Application> added;
+  final List<Application> updated;
+
+  /// Package names of the uninstalled applications
+  final List<String> removed;
+
+  ApplicationsChanges._fromMap(Map<dynamic, dynamic> map)
+      : token = map['token'] as String,
+        reset = map['reset'] as bool,
+        added = DeviceApps._parseApplications(map['added']),
+        updated = DeviceApps._parseApplications(map['updated']),
+        removed = (map['removed'] as List<dynamic>).cast<String>();
+
+  /// Whether nothing has changed since the previous token
+  bool get isEmpty =>
+      !reset && added.isEmpty && updated.isEmpty && removed.isEmpty;
+
+  @override
+  String toString() {
+    return 'ApplicationsChanges{token: $token, reset: $reset, '
+        'added: ${added.length}, updated: ${updated.length}, '
+        'removed: ${removed.length}}';
+  }
+}
+
+/// Result of [DeviceApps.getStats]
+class DeviceAppsStats {
+  final bool enabled;
+
+  /// eg: packages_scanned, icons_encoded, icon_cache_hits, bytes_serialized…
+  final Map<String, int> counters;
+
+  /// Duration of each phase (eg: list_packages, load_label, icon_render,
+  /// icon_compress, queue_wait…) and of each method call (method_<name>)
+  final Map<String, DeviceAppsTiming> timings;
+
+  DeviceAppsStats._fromMap(Map<dynamic, dynamic> map)
+      : enabled = map['enabled'] as bool,
+        counters = (map['counters'] as Map<dynamic, dynamic>)
+            .map((dynamic key, dynamic value) =>
+                MapEntry<String, int>(key as String, value as int)),
+        timings = (map['timings'] as Map<dynamic, dynamic>).map(
+            (dynamic key, dynamic value) => MapEntry<String, DeviceAppsTiming>(
+                key as String,
+                DeviceAppsTiming._fromMap(value as Map<dynamic, dynamic>)));
+
+  @override
+  String toString() {
+    return 'DeviceAppsStats{enabled: $enabled, counters: $counters, '
+        'timings: $timings}';
+  }
+}
+
+/// Durations are in milliseconds. Percentiles are approximated (with
+/// power of 2 buckets).
+class DeviceAppsTiming {
+  final int count;
+  final double totalMs;
+  final double meanMs;
+  final double maxMs;
+  final double p50Ms;
+  final double p90Ms;
+  final double p99Ms;
+
+  DeviceAppsTiming._fromMap(Map<dynamic, dynamic> map)
+      : count = map['count'] as int,
+        totalMs = map['total_ms'] as double,
+        meanMs = map['mean_ms'] as double,
+        maxMs = map['max_ms'] as double,
+        p50Ms = map['p50_ms'] as double,
+        p90Ms = map['p90_ms'] as double,
+        p99Ms = map['p99_ms'] as double;
+
+  @override
+  String toString() {
+    return 'DeviceAppsTiming{count: $count, mean: $meanMs ms, p50: $p50Ms ms, '
+        'p90: $p90Ms ms, p99: $p99Ms ms, max: $maxMs ms}';
+  }
+}
+
+/// Result of [DeviceApps.getAppIcons]
+class ApplicationIconsRequest {
+  final int _id;
+
+  /// The icon of each package ([null] if the app is not installed).
+  /// If the request is cancelled, only the icons generated before are in the
+  /// [Map].
+  final Future<Map<String, Uint8List?>> icons;
+
+  ApplicationIconsRequest._(this._id, this.icons);
+
+  /// Icons not generated yet are skipped and [icons] completes immediately.
+  /// Returns [false] if the request was already finished.
+  Future<bool> cancel() {
+    return DeviceApps._methodChannel
+        .invokeMethod<bool>(
+          'cancelAppIcons',
+          <String, int>{
+            'request_id': _id,
+          },
+        )
+        .then((bool? value) => value ?? false)
+        .catchError((dynamic err) => false);
+  }
+}
+
+/// An application installed on the device, with only some of its attributes
+/// (see [DeviceApps.getPartialInstalledApplications]).
+/// An attribute which was not requested is [null].
+class PartialApplication extends _BaseApplication {
+  final Map<dynamic, dynamic> _map;
+
+  PartialApplication._fromMap(Map<dynamic, dynamic> map)
+      : _map = map,
+        super._fromMap(map);
+
+  /// Displayable name of the application
+  String? get appName => _map['app_name'] as String?;
+
+  /// Full path to the base APK for this application
+  String? get apkFilePath => _map['apk_file_path'] as String?;
+
+  /// Public name of the application (eg: 1.0.0)
+  String? get versionName => _map['version_name'] as String?;
+
+  /// Unique version id for the application
+  int? get versionCode => _map['version_code'] as int?;
+
+  /// Full path to the default directory assigned to the package for its
+  /// persistent data
+  String? get dataDir => _map['data_dir'] as String?;
+
+  /// Whether the application is installed in the device's system image
+  bool? get systemApp => _map['system_app'] as bool?;
+
+  /// The time at which the app was first installed
+  int? get installTimeMillis => _map['install_time'] as int?;
+
+  /// The time at which the app was last updated
+  int? get updateTimeMillis => _map['update_time'] as int?;
+
+  /// The category of this application
+  ApplicationCategory? get category => _map.containsKey('category')
+      ? Application._parseCategory(_map['category'])
+      : null;
+
+  /// Whether the app is enabled
+  bool? get enabled => _map['is_enabled'] as bool?;
+
+  /// SHA-256 of the APK(s), see [ApplicationField.apkDigest]
+  String? get apkDigest => _map['apk_digest'] as String?;
+
+  /// Total size in bytes of the APK(s)
+  int? get apkSize => _map['apk_size'] as int?;
+
+  @override
+  String toString() {
+    return 'PartialApplication{packageName: $packageName, fields: $_map}';
+  }
+}
+
 /// An application installed on the device
 /// Depending on the Android version, some attributes may not be available
 class Application extends _BaseApplication {
@@ -223,7 +753,9 @@ class Application extends _BaseApplication {
     if (map.length == 0) {
       throw Exception('The map can not be null!');
     }
-    if (map.containsKey('app_icon')) {
+    if (map.containsKey('app_icon_file')) {
+      return ApplicationWithIconFile._fromMap(map);
+    } else if (map.containsKey('app_icon')) {
       return ApplicationWithIcon._fromMap(map);
     } else {
       return Application._fromMap(map);
@@ -348,14 +880,18 @@ class Application extends _BaseApplication {
 /// Image.memory(app.icon)
 /// ```
 class ApplicationWithIcon extends Application {
-  final String _icon;
+  /// Either the raw bytes ([Uint8List]) or a Base64 [String]
+  final Object _icon;
 
   ApplicationWithIcon._fromMap(Map<dynamic, dynamic> map)
-      : _icon = map['app_icon'] as String,
+      : _icon = map['app_icon'] as Object,
         super._fromMap(map);
 
   /// Icon of the application to use in conjunction with [Image.memory]
-  Uint8List get icon => base64.decode(_icon);
+  Uint8List get icon {
+    final Object icon = _icon;
+    return icon is Uint8List ? icon : base64.decode(icon as String);
+  }
 
   @override
   bool operator ==(Object other) =>
@@ -363,10 +899,35 @@ class ApplicationWithIcon extends Application {
       super == other &&
           other is ApplicationWithIcon &&
           runtimeType == other.runtimeType &&
-          _icon == other._icon;
+          listEquals(icon, other.icon);
+
+  @override
+  int get hashCode => super.hashCode ^ icon.length.hashCode;
+}
+
+/// If you have set [iconsAsFiles] to [true], the icon is not sent with the
+/// application, but written to a file in the cache directory (see
+/// [DeviceApps.getInstalledApplications]).
+class ApplicationWithIconFile extends Application {
+  /// Icon of the application to use in conjunction with [Image.file].
+  /// The file is kept until the application is updated (or until the cache is
+  /// trimmed, if it wasn't used for a while).
+  final File iconFile;
+
+  ApplicationWithIconFile._fromMap(Map<dynamic, dynamic> map)
+      : iconFile = File(map['app_icon_file'] as String),
+        super._fromMap(map);
+
+  @override
+  bool operator ==(Object other) =>
+      identical(this, other) ||
+      super == other &&
+          other is ApplicationWithIconFile &&
+          runtimeType == other.runtimeType &&
+          iconFile.path == other.iconFile.path;
 
   @override
-  int get hashCode => super.hashCode ^ _icon.hashCode;
+  int get hashCode => super.hashCode ^ iconFile.path.hashCode;
 }
 
 /// Represent an event relative to an application, which can be: